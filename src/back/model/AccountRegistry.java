@@ -0,0 +1,166 @@
+package back.model;
+
+import java.util.*;
+
+/**
+ * Registro de las cuentas cargadas, indexado por nombre y separado por tipo de usuario.
+ * Las cuentas de la foto se agregan al indice la primera vez que se buscan, las creadas
+ * despues de cargarla desde el principio. Las listas de administradores y DTs se arman una
+ * sola vez, la primera vez que se piden, y despues se mantienen al crear cuentas.
+ * Tambien lleva el directorio de torneos, que dice de que administrador es cada torneo y por
+ * lo tanto donde está su lista de DTs, y numera los torneos: los de la foto tienen su posicion
+ * en ella y los demas los numeros siguientes, en el orden en que aparecen.
+ */
+final class AccountRegistry {
+
+    private final MappedSnapshot snapshot;
+    /** Usuarios que no están en la foto */
+    private final ArrayList<User> created;
+    private final Map<String, User> byName = new HashMap<>();
+    /** Cuentas que no están en la foto, para saber si un administrador es de este registro */
+    private final Set<User> members = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Dueño de cada torneo, por nombre */
+    private final Map<String, Administrator> owners = new HashMap<>();
+    /** Numero de cada torneo que no está en la foto, por nombre */
+    private final Map<String, Integer> ids = new HashMap<>();
+    private ArrayList<Administrator> admins;
+    private ArrayList<DT> dts;
+
+    /**
+     * @param snapshot la foto de la que se cargan las cuentas, null si no hay
+     * @param users los usuarios que no están en la foto*/
+    AccountRegistry(MappedSnapshot snapshot, ArrayList<User> users) {
+        this.snapshot = snapshot;
+        this.created = users;
+        for (User u : users) {
+            byName.putIfAbsent(u.getName(), u);
+            members.add(u);
+        }
+        for (User u : users) {
+            if (u instanceof Administrator) {
+                for (PhysicalTournament t : ((Administrator) u).getLoadedTournaments()) {
+                    number(t);
+                    owners.putIfAbsent(t.getName(), (Administrator) u);
+                }
+            }
+        }
+    }
+
+    MappedSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return los usuarios que no están en la foto, en el orden en que se crearon*/
+    ArrayList<User> getCreated() {
+        return created;
+    }
+
+    /**
+     * @param name el nombre de la cuenta
+     * @return la cuenta, o null si no existe*/
+    User get(String name) {
+        User u = byName.get(name);
+        if (u == null && snapshot != null) {
+            int index = snapshot.findUser(name);
+            if (index >= 0) {
+                u = snapshot.getUser(index);
+                byName.put(name, u);
+            }
+        }
+        return u;
+    }
+
+    /**
+     * Agrega una cuenta nueva. Si ya hay una con el mismo nombre la busqueda por nombre sigue
+     * encontrando la primera, como siempre.
+     * @param u la cuenta*/
+    void add(User u) {
+        created.add(u);
+        members.add(u);
+        if (get(u.getName()) == null)
+            byName.put(u.getName(), u);
+        if (u instanceof Administrator) {
+            if (admins != null)
+                admins.add((Administrator) u);
+        } else if (dts != null) {
+            dts.add((DT) u);
+        }
+    }
+
+    /**
+     * @return los administradores, primero los de la foto*/
+    List<Administrator> getAdmins() {
+        if (admins == null)
+            admins = collect(Administrator.class);
+        return Collections.unmodifiableList(admins);
+    }
+
+    /**
+     * @return los DTs, primero los de la foto*/
+    List<DT> getDTs() {
+        if (dts == null)
+            dts = collect(DT.class);
+        return Collections.unmodifiableList(dts);
+    }
+
+    /**
+     * @param tournament el nombre del torneo
+     * @return el administrador dueño del torneo, o null si no existe*/
+    Administrator getOwner(String tournament) {
+        Administrator owner = owners.get(tournament);
+        if (owner == null && snapshot != null) {
+            int index = snapshot.findTournament(tournament);
+            if (index >= 0) {
+                owner = (Administrator) snapshot.getUser(snapshot.getTournamentOwner(index));
+                owners.put(tournament, owner);
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * Anota al dueño de un torneo nuevo. Los administradores que no son de este registro no
+     * se anotan, y si ya hay un torneo con el mismo nombre sigue valiendo el primero.
+     * @param owner el administrador
+     * @param t el torneo*/
+    void addTournament(Administrator owner, PhysicalTournament t) {
+        number(t);
+        if ((members.contains(owner) || (snapshot != null && snapshot.indexOf(owner) != null))
+                && getOwner(t.getName()) == null)
+            owners.put(t.getName(), owner);
+    }
+
+    /**
+     * Le pone al torneo el numero de su nombre, los torneos con el mismo nombre comparten numero
+     * @param t el torneo*/
+    void number(PhysicalTournament t) {
+        int index = snapshot != null ? snapshot.findTournament(t.getName()) : -1;
+        if (index < 0) {
+            int base = snapshot != null ? snapshot.getTournamentCount() : 0;
+            Integer id = ids.get(t.getName());
+            if (id == null) {
+                id = base + ids.size();
+                ids.put(t.getName(), id);
+            }
+            index = id;
+        }
+        t.setId(index);
+    }
+
+    private <T extends User> ArrayList<T> collect(Class<T> type) {
+        ArrayList<T> list = new ArrayList<>();
+        if (snapshot != null) {
+            boolean admin = type == Administrator.class;
+            for (int i = 0; i < snapshot.getUserCount(); i++) {
+                if (snapshot.isAdmin(i) == admin)
+                    list.add(type.cast(snapshot.getUser(i)));
+            }
+        }
+        for (User u : created) {
+            if (type.isInstance(u))
+                list.add(type.cast(u));
+        }
+        return list;
+    }
+}
@@ -8,6 +8,9 @@ import java.util.*;
 
 /**
  * Clase que maneja todas las cuentas de usuarios del programa Mini Gran DT.
+ * Es la entrada de la interfaz: usa un GameStore, el de los archivos del programa, y la sesion de
+ * la cuenta que está logeada. Para tener varias ligas o varias sesiones a la vez se usan
+ * directamente GameStore y Session.
  *
  * @author emiliobasualdo
  */
@@ -15,62 +18,66 @@ public class AccountsManager implements Serializable{
 
     private static final long serialVersionUID = 1L;
 
-    private static ArrayList<User> users;
-    private static User user;
+    /** Cantidad de operaciones a partir de la cual se toma una foto, para cada almacen que se abre */
+    private static int checkpointMutations = 512;
+    /** Milisegundos a partir de los cuales se toma una foto, para cada almacen que se abre */
+    private static long checkpointInterval = 5 * 60 * 1000;
 
+    /** El almacen del programa, vacio hasta que se cargan las cuentas */
+    private static volatile GameStore store = new GameStore(null);
+    private static volatile Session session;
+
+    /**
+     * Retorna el almacen de las cuentas cargadas
+     */
+    public static GameStore getStore() {
+        return store;
+    }
+    /**
+     * Retorna la sesion de la cuenta que está logeada, null si no hay ninguna
+     */
+    public static Session getSession() {
+        return session;
+    }
     /**
      * Retrona el usuario que está logeado
      */
     public static User getSignedAccount() {
-        return user;
+        Session s = session;
+        return s == null ? null : s.getAccount();
+    }
+    /**
+     * Retorna el punto de entrada de los cambios sobre las cuentas, que los aplica de a uno en un
+     * hilo aparte y publica fotos de solo lectura del estado de los DTs
+     */
+    public static CommandLoop getCommands() {
+        return store.getCommands();
     }
     /**
      * Retrona una lista con todos aquellos que sean administradores
      */
-    public static ArrayList<Administrator> getAdmins() {
-        ArrayList<Administrator> aux = new ArrayList<>();
-        for(User a : users) {
-            if(a instanceof Administrator)
-                aux.add((Administrator)a);
-        }
-        return aux;
+    public static List<Administrator> getAdmins() {
+        return store.getAdmins();
     }
     /**
      * Retrona los torneos del administrador que está logeado
      */
     public static Set<PhysicalTournament> getTournaments() {
-        return ((Administrator) user).getTournaments();
+        return ((Administrator) getSignedAccount()).getTournaments();
     }
     /**
      * Crea un administrador
      * @param username El nombre del administrador
      */
     public static boolean createAdmin(String username) {
-        if(username.equals(""))
-            return false;
-        users.add(new Administrator(username));
-        return true;
+        return store.getCommands().createAdmin(username);
     }
     /**
      * Crea un Usuario
      * @param username El nombre del usuario
      */
     public static boolean createDT(String username) {
-        if(username.equals(""))
-            return false;
-        users.add(new DT(username));
-        return true;
-    }
-    /**
-     * Retorna una cuenta especifica
-     * @param accountname El nombre de la cuenta
-     */
-    private static User getAccount(String accountname) {
-        for (User aux: users) {
-            if (aux.getName().equals(accountname))
-                return aux;
-        }
-        return null;
+        return store.getCommands().createDT(username);
     }
     /**
      * Guardamos la cuenta que está logeada para poder acceder
@@ -78,64 +85,81 @@ public class AccountsManager implements Serializable{
      * @param accountName El nombre del usuario
      */
     public static void setUser(String accountName) {
-        user = getAccount(accountName);
+        session = store.login(accountName);
     }
     /**
      * Busca al usuario pasado como parametro y si lo contiene retorna true
      * @param username nombre de la cuenta a buscar
      * @return true si lo encuentra, falso en otro caso*/
     public static boolean contains(String username) {
-        return !username.equals("") && getAccount(username) != null;
+        return store.contains(username);
     }
     /**
      * @return Retorna true si al cuenta logeada e User, falso en otro caso
      * */
     public static boolean accountIsDT() {
-        return user != null && user instanceof DT;
+        Session s = session;
+        return s != null && s.isDT();
     }
     /**
      * @return Retorna un array de los DTs en el toreno
      * */
     public static ArrayList<DT> getDTsInTournament(PhysicalTournament physicalTournament) {
-        ArrayList<DT> users = null;
-        for (User user : AccountsManager.users) {
-            if (user instanceof Administrator) {
-                Administrator admin = (Administrator) user;
-                if (admin.containsTournament(physicalTournament)) {
-                    users = admin.getOrderedDTs(physicalTournament);
-                    break;
-                }
-            }
-        }
-        return users;
+        return store.getDTsInTournament(physicalTournament);
     }
 
     /** Carga los usuarios existentes al programa */
     public static void loadAccounts() throws IOException, ClassNotFoundException {
-        users = (ArrayList<User>) FileManager.readFromFile("accountsData.temp");
-        if (users == null)
-            users = new ArrayList<>();
+        loadAccounts(null);
+    }
+
+    /**
+     * Cierra el almacen actual y abre el de un directorio, ver GameStore.open
+     * @param directory directorio de los archivos, null para usar el directorio por defecto*/
+    public static void loadAccounts(String directory) throws IOException, ClassNotFoundException {
+        store.close();
+        session = null;
+        GameStore opened = GameStore.open(directory);
+        opened.setCheckpointPolicy(checkpointMutations, checkpointInterval);
+        store = opened;
     }
 
     /**
-     * Guarda la lista de usuario existente
+     * Cambia cada cuanto se toma una foto de las cuentas en segundo plano
+     * @param mutations cantidad de operaciones a partir de la cual se toma una foto
+     * @param intervalMillis milisegundos a partir de los cuales se toma una foto si hubo cambios*/
+    public static void setCheckpointPolicy(int mutations, long intervalMillis) {
+        checkpointMutations = mutations;
+        checkpointInterval = intervalMillis;
+        store.setCheckpointPolicy(mutations, intervalMillis);
+    }
+
+    /**
+     * Guarda la foto completa y vacia el journal, ver GameStore.save
      * */
     public static void save() throws IOException, ClassNotFoundException {
-        FileManager.writeToFile(users,"accountsData.temp");
+        store.save();
+    }
+
+    /**
+     * Cierra el almacen, ver GameStore.close
+     * */
+    public static void close() throws IOException {
+        store.close();
     }
     /**
      * Metodo implementeados de la serializacion
      * */
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
-        out.writeObject(users);
+        out.writeObject(store.getCreated());
     }
     /**
      * Metodo implementeados de la serializacion
      * */
     private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
         ois.defaultReadObject();
-        users = (ArrayList<User>)ois.readObject();
+        store.restore((ArrayList<User>) ois.readObject());
     }
 
 }
@@ -3,7 +3,9 @@ package back.model;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.*;
+import java.util.stream.IntStream;
 
     /**
      * Modela al Administrador de cada club de Futbol.
@@ -12,32 +14,64 @@ import java.util.*;
 public class Administrator extends User {
 
     private static final long serialVersionUID = 1L;
+    /** Cantidad de equipos de DTs que actualiza cada tarea al actualizar en paralelo */
+    private static final int DT_BATCH = 256;
 
-    private Map<PhysicalTournament, ArrayList<DT>> tournamentUsers = new HashMap<>();
+    /** Se serializa como el mapa de antes, para poder leer los archivos viejos */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("tournamentUsers", Map.class)
+    };
+
+    private transient TournamentMap<ArrayList<DT>> tournamentUsers = new TournamentMap<>();
+    /** El mapa leido del archivo, se pasa a tournamentUsers la primera vez que se usa */
+    private transient Map<PhysicalTournament, ArrayList<DT>> saved;
+    /** Torneos que todavia están solo en la foto, por nombre, con su posicion en ella */
+    private transient Map<String, Integer> pending;
+    private transient MappedSnapshot source;
+    /** Los torneos de tournamentUsers por nombre, se rearma si el administrador se leyó serializado */
+    private transient Map<String, PhysicalTournament> byName;
+    private transient Set<PhysicalTournament> tournamentsView;
+    /** Tabla de posiciones de cada torneo, se arma la primera vez que se pide */
+    private transient TournamentMap<DTLeaderboard> leaderboards;
+    /** Quien tiene a cada jugador en cada torneo, se arma la primera vez que se suben estadisticas */
+    private transient TournamentMap<PlayerOwners> owners;
+    /** Lista que se reusa en cada actualizacion para recorrer los equipos recibidos en orden */
+    private transient ArrayList<Map<String, PhysicalPlayer.Properties>> teamsScratch;
 
     public Administrator(String name) {
         super(name);
     }
 
-    /**Metodo para que el front.controller pueda tener acceso a los torneos y asi poder mostrarlos al admin*/
+    /**Metodo para que el front.controller pueda tener acceso a los torneos y asi poder mostrarlos al admin
+     * @return los torneos, de solo lectura*/
     public Set<PhysicalTournament> getTournaments() {
-        return tournamentUsers.keySet();
+        loadAll();
+        if (tournamentsView == null)
+            tournamentsView = tournamentUsers().keySet();
+        return tournamentsView;
     }
         /**
          * @param name el nombre del torneo a retornar
-         * @return el trorneo especificado*/
+         * @return el trorneo especificado, el mismo que tiene el administrador, o null si no existe*/
     public PhysicalTournament getTournament(String name) {
-        for (PhysicalTournament t : tournamentUsers.keySet()) {
-            if (t.getName().compareTo(name) == 0)
-                return new PhysicalTournament(t);
+        load(name);
+        return index().get(name);
+    }
+    /**
+     * @return el indice de los torneos por nombre, armandolo si hace falta*/
+    private Map<String, PhysicalTournament> index() {
+        if (byName == null) {
+            byName = new HashMap<>();
+            for (PhysicalTournament t : tournamentUsers().keySet())
+                byName.put(t.getName(), t);
         }
-        return null;
+        return byName;
     }
     /** Crea un torneo
      * @param tournamentName nombre del torneo a crear
      * @param maxPlayers cantidad maxima de juagores en el torneo
      * @return true si no existe ya un torneo con ese nombre, false si existe*/
-    public boolean createTournament(String tournamentName, int maxPlayers){
+    boolean createTournament(String tournamentName, int maxPlayers){
         if(tournamentName.equals("") || maxPlayers<0)
             return false;
 
@@ -47,87 +81,319 @@ public class Administrator extends User {
         return true;
     }
 
+    /**
+     * @param physicalTournament el torneo
+     * @return una lista nueva con los DTs del torneo, de mayor a menor puntaje, o null si el torneo no existe*/
     public ArrayList<DT> getOrderedDTs(PhysicalTournament physicalTournament) {
-        ArrayList<DT> users = tournamentUsers.get(physicalTournament);
-        users.sort(new Comparator<DT>() {
-            @Override
-            public int compare(DT t, DT t1) {
-                return t1.getPoints(physicalTournament) - t.getPoints(physicalTournament);
-            }
-        });
-        return users;
+        DTLeaderboard leaderboard = getLeaderboard(physicalTournament);
+        return leaderboard == null ? null : leaderboard.getOrdered();
+    }
+    /**
+     * @param physicalTournament el torneo
+     * @param from el primer puesto a devolver, empezando en 0
+     * @param count la cantidad maxima de DTs a devolver
+     * @return los DTs de esos puestos, o null si el torneo no existe*/
+    public ArrayList<DT> getOrderedDTs(PhysicalTournament physicalTournament, int from, int count) {
+        DTLeaderboard leaderboard = getLeaderboard(physicalTournament);
+        return leaderboard == null ? null : leaderboard.getRange(from, count);
+    }
+    /**
+     * @param physicalTournament el torneo
+     * @param dt el DT
+     * @return el puesto del DT en el torneo, empezando en 1, o 0 si no está inscripto*/
+    public int getRanking(PhysicalTournament physicalTournament, DT dt) {
+        DTLeaderboard leaderboard = getLeaderboard(physicalTournament);
+        return leaderboard == null ? 0 : leaderboard.getRanking(dt);
+    }
+    /**
+     * @return la tabla de posiciones del torneo, armandola si hace falta, o null si el torneo no existe*/
+    private DTLeaderboard getLeaderboard(PhysicalTournament t) {
+        if (leaderboards == null)
+            leaderboards = new TournamentMap<>();
+        DTLeaderboard leaderboard = leaderboards.get(t);
+        if (leaderboard == null) {
+            ArrayList<DT> dts = getDTs(t);
+            if (dts == null)
+                return null;
+            PhysicalTournament own = getTournament(t.getName());
+            leaderboard = new DTLeaderboard(own, dts);
+            leaderboards.put(own, leaderboard);
+        }
+        return leaderboard;
     }
     /**Para cuando el administrador quiera crear un nuevo torneo.
      * @param t el torneo a agregar*/
-    public void addTournament(PhysicalTournament t){
-        tournamentUsers.put(new PhysicalTournament(t),new ArrayList<>());
+    void addTournament(PhysicalTournament t){
+        PhysicalTournament tournament = new PhysicalTournament(t);
+        // se numera antes de usarlo de clave
+        GameStore.current().tournamentAdded(this, tournament);
+        t.setId(tournament.getId());
+        tournament.attach(this);
+        tournamentUsers().put(tournament,new ArrayList<>());
+        if (leaderboards != null)
+            leaderboards.remove(tournament);
+        if (owners != null)
+            owners.remove(tournament);
+        // si ya habia uno con ese nombre el mapa se queda con el anterior
+        index().putIfAbsent(tournament.getName(), tournament);
+        if (pending != null)
+            pending.remove(tournament.getName());
+        Journal.current().addTournament(this, tournament);
+    }
+    /**
+     * Vuelve a asociar los torneos y sus equipos a este administrador,
+     * se usa al cargar las cuentas guardadas*/
+    void attachTournaments() {
+        for (PhysicalTournament t : tournamentUsers().keySet())
+            t.attach(this);
+    }
+    /**
+     * Deja los torneos para que se carguen de la foto la primera vez que se usen
+     * @param source la foto de la que salió el administrador
+     * @param pending los torneos por nombre, con su posicion en la foto*/
+    void setSource(MappedSnapshot source, Map<String, Integer> pending) {
+        this.source = source;
+        this.pending = pending.isEmpty() ? null : pending;
+    }
+    /**
+     * Trae de la foto el torneo con ese nombre, sin sus DTs, si todavia no se trajo*/
+    private void load(String name) {
+        if (pending != null) {
+            Integer index = pending.remove(name);
+            if (index != null)
+                put(source.getTournament(index));
+            if (pending.isEmpty())
+                pending = null;
+        }
+    }
+    /**
+     * Trae de la foto todos los torneos que falten*/
+    private void loadAll() {
+        if (pending != null) {
+            for (Integer index : pending.values())
+                put(source.getTournament(index));
+            pending = null;
+        }
+    }
+    /**
+     * Agrega un torneo traido de la foto, sin sus DTs*/
+    private void put(PhysicalTournament t) {
+        tournamentUsers().put(t, null);
+        index().put(t.getName(), t);
+    }
+    /**
+     * @param t el torneo
+     * @return los DTs inscriptos en el torneo, sin ordenar, trayendolos de la foto si hace falta*/
+    ArrayList<DT> getDTs(PhysicalTournament t) {
+        load(t.getName());
+        ArrayList<DT> dts = tournamentUsers().get(t);
+        if (dts == null && tournamentUsers().containsKey(t)) {
+            PhysicalTournament own = getTournament(t.getName());
+            dts = source.loadRoster(source.indexOf(own));
+            tournamentUsers().put(own, dts);
+        }
+        return dts;
+    }
+    /**
+     * @return los torneos que ya se trajeron de la foto o se crearon despues*/
+    Collection<PhysicalTournament> getLoadedTournaments() {
+        return tournamentUsers().keySet();
+    }
+    /**
+     * @return la posicion en la foto de los torneos que todavia no se trajeron*/
+    Collection<Integer> getPendingTournaments() {
+        return pending == null ? Collections.<Integer>emptyList() : pending.values();
+    }
+    /**
+     * @param t un torneo ya traido
+     * @return sus DTs, o null si todavia están solo en la foto*/
+    ArrayList<DT> getLoadedDTs(PhysicalTournament t) {
+        return tournamentUsers().get(t);
     }
     /**
      * Chequea si el torneo existe
      * @param physicalTournament el torneo a buscar
      * @return true si existe, false caso contrario*/
     public boolean containsTournament(PhysicalTournament physicalTournament) {
-        return tournamentUsers.containsKey(physicalTournament);
+        return index().containsKey(physicalTournament.getName())
+                || (pending != null && pending.containsKey(physicalTournament.getName()));
     }
     /**
      * Agrega un Dt a un torneo
      * @param tournament nombre del toreno a ser agregado*/
-    public void addDT(String tournament, DT DT) {
+    void addDT(String tournament, DT DT) {
         PhysicalTournament tour = getTournament(tournament);
-        tournamentUsers.get(tour).add(DT);
+        getDTs(tour).add(DT);
+        DTLeaderboard leaderboard = leaderboards == null ? null : leaderboards.get(tour);
+        if (leaderboard != null)
+            leaderboard.add(DT);
+        PlayerOwners playerOwners = owners == null ? null : owners.get(tour);
+        if (playerOwners != null)
+            playerOwners.add(DT);
+        Journal.current().addDT(this, tournament, DT);
     }
     /**
      * Se ocupa de pasar la informacion recivida el View a las demas clases
      * conteniadas en el administrador. Se refreshea las inforamcion de cada juagador de los torneo
      * Cada juagador se eecuntra en un equipo, estos estan en torneos.
      * @param dataTournaments La informacion recibida del front a ser transmitida hacia las demas clases*/
-    public void refresh(Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> dataTournaments) {
-        for (PhysicalTournament myTour : tournamentUsers.keySet()) {
-            if(dataTournaments.get(myTour.getName()) != null) {
-                myTour.refresh(dataTournaments.get(myTour.getName()));
-                refreshDTs(myTour.getName(), dataTournaments.get(myTour.getName()));
+    void refresh(Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> dataTournaments) {
+        refresh(dataTournaments, false);
+    }
+    /**
+     * Igual que refresh, pero puede repartir los torneos, y los DTs de cada torneo, entre los hilos del
+     * ForkJoinPool comun. El resultado es el mismo que en orden: cada torneo solo toca sus jugadores y
+     * los equipos de sus DTs, y los puntos de cada DT se suman en una sola tarea.
+     * @param dataTournaments La informacion recibida del front a ser transmitida hacia las demas clases
+     * @param parallel true para usar todos los nucleos*/
+    void refresh(Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> dataTournaments, boolean parallel) {
+        if (!parallel) {
+            if (teamsScratch == null)
+                teamsScratch = new ArrayList<>();
+            for (PhysicalTournament myTour : getTournaments()) {
+                if(dataTournaments.get(myTour.getName()) != null) {
+                    myTour.refresh(dataTournaments.get(myTour.getName()));
+                    refreshDTs(myTour, dataTournaments.get(myTour.getName()), teamsScratch, false);
+                }
             }
+        } else {
+            ArrayList<PhysicalTournament> tours = new ArrayList<>();
+            for (PhysicalTournament myTour : getTournaments()) {
+                if (dataTournaments.get(myTour.getName()) != null) {
+                    // lo que todavia está en la foto se trae en este hilo
+                    myTour.getTeams();
+                    ArrayList<DT> dts = getDTs(myTour);
+                    if (dts != null)
+                        getOwners(myTour, dts);
+                    tours.add(myTour);
+                }
+            }
+            tours.parallelStream().forEach(myTour -> {
+                myTour.refresh(dataTournaments.get(myTour.getName()));
+                refreshDTs(myTour, dataTournaments.get(myTour.getName()), new ArrayList<>(), true);
+            });
         }
+        Journal.current().refresh(this, dataTournaments);
     }
     /**
      * Se encarga de pasar la informacion a los DTS para que hagan el update en sus rankings i plata disponible
-     * @param tourName nombre del torneo que se está refreshiando
+     * @param tour el torneo que se está refreshiando
      * @param tournament informacion nueva del torneo
+     * @param teams lista vacia para recorrer los equipos recibidos en orden
+     * @param parallel true para repartir los DTs entre varios hilos
      * */
-    private void refreshDTs(String tourName, Map<String,Map<String,PhysicalPlayer.Properties>> tournament) {
-        PhysicalTournament tour = getTournament(tourName);
-        ArrayList<DT> DTS = tournamentUsers.get(tour);
-        if (DTS != null) {
-            for (DT dt : DTS) {
-                dt.refreshPoints(tour, unifyPlayers(tournament));
+    private void refreshDTs(PhysicalTournament tour, Map<String,Map<String,PhysicalPlayer.Properties>> tournament,
+                            ArrayList<Map<String, PhysicalPlayer.Properties>> teams, boolean parallel) {
+        ArrayList<DT> DTS = getDTs(tour);
+        if (DTS == null)
+            return;
+        PlayerOwners playerOwners = getOwners(tour, DTS);
+        for (Map<String, PhysicalPlayer.Properties> team : tournament.values())
+            teams.add(team);
+        boolean split = parallel && playerOwners.getTeamCount() > DT_BATCH;
+        if (split) {
+            // cada tarea suma los puntos de sus propios equipos de DTs
+            int batches = (playerOwners.getTeamCount() + DT_BATCH - 1) / DT_BATCH;
+            IntStream.range(0, batches).parallel().forEach(b -> {
+                int end = Math.min(playerOwners.getTeamCount(), (b + 1) * DT_BATCH);
+                for (int i = b * DT_BATCH; i < end; i++)
+                    refreshTeam(playerOwners.getTeam(i), playerOwners.getCount(playerOwners.getTeam(i)), teams);
+            });
+        }
+        // las listas del indice se recorren con el indice tomado, asi no cambian con una compra
+        synchronized (playerOwners) {
+            if (!split) {
+                for (int t = 0; t < teams.size(); t++) {
+                    for (Map.Entry<String, PhysicalPlayer.Properties> player : teams.get(t).entrySet()) {
+                        List<Integer> positions = playerOwners.get(player.getKey());
+                        if (positions != null && !isRepeated(teams, t, player.getKey())) {
+                            for (int i = 0; i < positions.size(); i++)
+                                DTS.get(positions.get(i)).getDTTeamsManager().getTeam(tour).refreshPoints(player.getValue());
+                        }
+                    }
+                }
+            }
+            // la tabla se actualiza cuando ya se sumaron todos los puntos de cada DT
+            DTLeaderboard leaderboard = leaderboards == null ? null : leaderboards.get(tour);
+            if (leaderboard != null) {
+                for (int t = 0; t < teams.size(); t++) {
+                    for (String name : teams.get(t).keySet()) {
+                        List<Integer> positions = playerOwners.get(name);
+                        if (positions != null) {
+                            for (int i = 0; i < positions.size(); i++)
+                                leaderboard.update(positions.get(i));
+                        }
+                    }
+                }
             }
         }
+        teams.clear();
     }
-    /**Junta todos los jugadores de todos los teams en un solo arreglo clavevalor
-     * @param teams los euipos a unificar
-     * @return un mapa con todos los jugaroes de los equipos*/
-    private Map<String,PhysicalPlayer.Properties> unifyPlayers(Map<String, Map<String, PhysicalPlayer.Properties>> teams)  {
-        Map<String, PhysicalPlayer.Properties> unified = new HashMap<>();
-        for (Map<String, PhysicalPlayer.Properties> team : teams.values()) {
-            unified.putAll(team);
+    /**
+     * Suma a un equipo de DT los puntos de sus jugadores que se actualizaron
+     * @param team el equipo
+     * @param count cuantas veces está inscripto su DT
+     * @param teams los equipos recibidos, en orden*/
+    private static void refreshTeam(DTTeam team, int count, List<Map<String, PhysicalPlayer.Properties>> teams) {
+        List<PhysicalPlayer> players = team.getPhysicalPlayers();
+        for (int i = 0; i < players.size(); i++) {
+            PhysicalPlayer.Properties properties = null;
+            for (int t = teams.size() - 1; t >= 0 && properties == null; t--)
+                properties = teams.get(t).get(players.get(i).getName());
+            if (properties != null) {
+                for (int c = 0; c < count; c++)
+                    team.refreshPoints(properties);
+            }
         }
-        return unified;
     }
- 
-    @Override
-     public String toString() {
-        return "Administrator{" + "name='" + name + Arrays.toString(tournamentUsers.keySet().toArray()) + '}';
+    /**
+     * Si un jugador aparece en mas de un equipo vale la informacion del ultimo
+     * @return true si el jugador vuelve a aparecer en un equipo posterior*/
+    private static boolean isRepeated(List<Map<String, PhysicalPlayer.Properties>> teams, int team, String player) {
+        for (int t = team + 1; t < teams.size(); t++) {
+            if (teams.get(t).containsKey(player))
+                return true;
+        }
+        return false;
+    }
+    /**
+     * @return el indice de quien tiene a cada jugador del torneo, armandolo si hace falta*/
+    private PlayerOwners getOwners(PhysicalTournament tour, ArrayList<DT> dts) {
+        if (owners == null)
+            owners = new TournamentMap<>();
+        PlayerOwners playerOwners = owners.get(tour);
+        if (playerOwners == null) {
+            playerOwners = new PlayerOwners(tour, dts);
+            owners.put(tour, playerOwners);
+        }
+        return playerOwners;
+    }
+
+    private TournamentMap<ArrayList<DT>> tournamentUsers() {
+        if (saved != null) {
+            tournamentUsers = new TournamentMap<>(saved);
+            saved = null;
+        }
+        return tournamentUsers;
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
-        out.writeUTF(name);
-        out.writeObject(tournamentUsers);
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("tournamentUsers", saved != null ? saved : tournamentUsers.toMap());
+        out.writeFields();
     }
 
-    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-        ois.defaultReadObject();
-        name = ois.readUTF();
-        tournamentUsers = (Map<PhysicalTournament, ArrayList<DT>>) ois.readObject();
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        // los torneos del mapa pueden no estar terminados de leer, se pasan a tournamentUsers despues
+        saved = (Map<PhysicalTournament, ArrayList<DT>>) fields.get("tournamentUsers", null);
     }
+
+ 
+    @Override
+     public String toString() {
+        return "Administrator{" + "name='" + name + Arrays.toString(getTournaments().toArray()) + '}';
+    }
+
 }
@@ -0,0 +1,112 @@
+package back.model;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decide cuando tomar una foto de las cuentas y la escribe en un hilo aparte, para que ni la
+ * interfaz ni el cierre del programa tengan que esperar a que se escriba la base completa.
+ * Se toma una foto cada cierta cantidad de operaciones o cuando pasó cierto tiempo desde la
+ * anterior. El tiempo se mira despues de cada tanda de operaciones y, si no llegan operaciones,
+ * cuando vence el intervalo: si no hay cambios no hace falta foto, porque el journal ya tiene todo
+ * lo necesario para recuperar.
+ * Hay a lo sumo una escritura en curso por cada GameStore.
+ */
+final class Checkpointer {
+
+    /** Cantidad de operaciones por defecto a partir de la cual se toma una foto */
+    private static final int DEFAULT_MUTATIONS = 512;
+    /** Tiempo por defecto entre fotos, en milisegundos */
+    private static final long DEFAULT_INTERVAL = 5 * 60 * 1000;
+    /** Milisegundos que se espera para volver a mirar si ya se puede tomar la foto */
+    private static final long RETRY = 100;
+
+    private volatile int mutations = DEFAULT_MUTATIONS;
+    private volatile long interval = DEFAULT_INTERVAL;
+    private long last = System.currentTimeMillis();
+    private ExecutorService executor;
+    private Future<?> running;
+
+    /**
+     * @param mutations cantidad de operaciones a partir de la cual se toma una foto
+     * @param interval milisegundos a partir de los cuales se toma una foto si hubo cambios*/
+    void configure(int mutations, long interval) {
+        this.mutations = mutations;
+        this.interval = interval;
+    }
+
+    /**
+     * @param pending operaciones registradas desde la ultima foto
+     * @return true si corresponde tomar una foto ahora*/
+    boolean isDue(int pending) {
+        if (pending == 0 || (running != null && !running.isDone()))
+            return false;
+        return pending >= mutations || System.currentTimeMillis() - last >= interval;
+    }
+
+    /**
+     * @param pending operaciones registradas desde la ultima foto
+     * @return milisegundos que faltan para que corresponda tomar una foto por tiempo, Long.MAX_VALUE
+     * si no hay cambios*/
+    long delay(int pending) {
+        if (pending == 0)
+            return Long.MAX_VALUE;
+        // si la foto anterior sigue escribiendose o falló, se vuelve a mirar un poco despues
+        return Math.max(interval - (System.currentTimeMillis() - last), RETRY);
+    }
+
+    /**
+     * Escribe la foto ya capturada en el hilo de fondo
+     * @param write la escritura*/
+    void submit(Runnable write) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        last = System.currentTimeMillis();
+        running = executor.submit(write);
+    }
+
+    /**
+     * Espera a que termine la escritura en curso, si hay una*/
+    void await() {
+        if (running == null)
+            return;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                running.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                // la escritura no cambia el modelo, si falló el journal sigue teniendo los cambios
+                break;
+            }
+        }
+        running = null;
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Espera la escritura en curso y termina el hilo de fondo, se llama al cerrar el almacen*/
+    void shutdown() {
+        await();
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Vuelve a contar el tiempo desde ahora, se llama al cargar las cuentas*/
+    void reset() {
+        last = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,518 @@
+package back.model;
+
+import back.model.exceptions.ClosedWindowException;
+import back.model.exceptions.CompleteTeamException;
+import back.model.exceptions.ExistentNameException;
+import back.model.exceptions.InsufficientFundsException;
+import back.model.exceptions.OpenWindowException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Punto de entrada de todos los cambios sobre el modelo de un GameStore. Cada cambio es un comando que se deja en
+ * una cola y lo ejecuta un unico hilo, de a tandas, asi el modelo, el journal y las fotos de las
+ * cuentas solo se tocan desde ese hilo. Despues de cada tanda se publica una ModelSnapshot con el
+ * estado de los DTs que cambiaron, que se puede leer desde cualquier hilo sin candados, y si
+ * corresponde se toma una foto de las cuentas, que asi nunca ve una operacion a medias.
+ * Los metodos del modelo que cambian algo no son publicos, asi que esta es la unica forma de
+ * cambiarlo. Los metodos esperan a que el comando se ejecute y tiran las mismas excepciones que el
+ * metodo del modelo. Si se llaman desde el hilo que escribe, o con el ciclo detenido, se ejecutan en
+ * el momento.
+ */
+public final class CommandLoop {
+
+    /** Cantidad maxima de comandos por tanda */
+    private static final int BATCH = 256;
+    /** Milisegundos que se espera un comando antes de fijarse si el ciclo sigue vivo */
+    private static final long WAIT = 100;
+
+    private final GameStore store;
+    private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile ModelSnapshot snapshot = ModelSnapshot.EMPTY;
+
+    /**
+     * @param store el almacen cuyos cambios aplica*/
+    CommandLoop(GameStore store) {
+        this.store = store;
+        writer = new Thread(this::run, "model-writer");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Un cambio sobre el modelo*/
+    interface Command<R> {
+        R run() throws Exception;
+    }
+
+    /**
+     * Una lectura del modelo, que no lo cambia. Lo que devuelve no puede depender de que el modelo
+     * siga igual: tiene que ser una copia, o una lista de solo lectura que no cambia*/
+    public interface Query<R> {
+        R run();
+    }
+
+    /**
+     * Arranca el hilo que escribe*/
+    void start() {
+        running = true;
+        writer.start();
+    }
+
+    /**
+     * Ejecuta los comandos que quedan en la cola y detiene el hilo que escribe*/
+    void stop() {
+        if (!running)
+            return;
+        running = false;
+        queue.add(new Pending<>(null, Collections.<DT>emptyList()));
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * @return la ultima foto publicada*/
+    public ModelSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @param dt el DT
+     * @return una foto que tiene el estado del DT, la ultima publicada si ya lo tiene*/
+    public ModelSnapshot read(DT dt) {
+        ModelSnapshot s = snapshot;
+        if (s.contains(dt))
+            return s;
+        try {
+            call(() -> null, dt);
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+        return running ? snapshot : snapshot.next(Collections.singletonList(dt));
+    }
+
+    /**
+     * Hace una lectura del modelo en el hilo que escribe, entre dos tandas, asi no ve ningun cambio
+     * a medias. Es para lo que no está en las fotos, como los torneos, los rankings o los
+     * administradores
+     * @param query la lectura
+     * @return lo que devuelve la lectura*/
+    public <R> R read(Query<R> query) {
+        try {
+            return call(query::run);
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Crea un administrador, como AccountsManager.createAdmin*/
+    public boolean createAdmin(String username) {
+        try {
+            return call(() -> store.createAdmin(username));
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Crea un DT, como AccountsManager.createDT*/
+    public boolean createDT(String username) {
+        try {
+            return call(() -> store.createDT(username));
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Crea un torneo del administrador, como Administrator.createTournament*/
+    public boolean createTournament(Administrator admin, String tournamentName, int maxPlayers) {
+        try {
+            return call(() -> admin.createTournament(tournamentName, maxPlayers));
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Agrega una copia del torneo al administrador, como Administrator.addTournament*/
+    public void addTournament(Administrator admin, PhysicalTournament t) {
+        try {
+            call(() -> {
+                admin.addTournament(t);
+                return null;
+            });
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Agrega un equipo al torneo, como PhysicalTournament.addTeam*/
+    public void addTeam(PhysicalTournament t, PhysicalTeam team) {
+        try {
+            call(() -> {
+                t.addTeam(team);
+                return null;
+            });
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Agrega un jugador al equipo, como PhysicalTeam.addPlayer*/
+    public void addPlayer(PhysicalTeam team, PhysicalPlayer p) throws ExistentNameException {
+        try {
+            call(() -> {
+                team.addPlayer(p);
+                return null;
+            });
+        } catch (ExistentNameException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Inscribe al DT en el torneo y lo anota en el administrador del torneo, si tiene*/
+    public void signUp(DT dt, PhysicalTournament t) {
+        try {
+            call(() -> {
+                dt.signUp(t);
+                if (t.getAdministrator() != null)
+                    t.getAdministrator().addDT(t.getName(), dt);
+                return null;
+            }, dt);
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Compra un jugador, como DT.buy. Con el mercado de pases del torneo abierto no se puede, hay
+     * que dejar una orden*/
+    public void buy(DT dt, PhysicalTournament t, PhysicalPlayer p) throws InsufficientFundsException, CompleteTeamException, ExistentNameException, OpenWindowException {
+        // comprar y vender son lo mas frecuente: en el momento se hacen sin armar el comando
+        if (isInline()) {
+            GameStore previous = store.enter();
+            try {
+                checkClosed(t);
+                dt.buy(t, p);
+            } finally {
+                GameStore.exit(previous);
+            }
+            return;
+        }
+        try {
+            call(() -> {
+                checkClosed(t);
+                dt.buy(t, p);
+                return null;
+            }, dt);
+        } catch (InsufficientFundsException | CompleteTeamException | ExistentNameException | OpenWindowException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Vende un jugador, como DT.sell. Con el mercado de pases del torneo abierto no se puede, hay
+     * que dejar una orden*/
+    public void sell(DT dt, PhysicalTournament t, PhysicalPlayer p) throws OpenWindowException {
+        if (isInline()) {
+            GameStore previous = store.enter();
+            try {
+                checkClosed(t);
+                dt.sell(t, p);
+            } finally {
+                GameStore.exit(previous);
+            }
+            return;
+        }
+        try {
+            call(() -> {
+                checkClosed(t);
+                dt.sell(t, p);
+                return null;
+            }, dt);
+        } catch (OpenWindowException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Vende y compra una tanda de jugadores, como DT.transfer. Con el mercado de pases del torneo
+     * abierto no se puede, hay que dejar una orden*/
+    public void transfer(DT dt, PhysicalTournament t, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws InsufficientFundsException, CompleteTeamException, ExistentNameException, OpenWindowException {
+        try {
+            call(() -> {
+                checkClosed(t);
+                dt.transfer(t, sells, buys);
+                return null;
+            }, dt);
+        } catch (InsufficientFundsException | CompleteTeamException | ExistentNameException | OpenWindowException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Deja una orden en el mercado de pases del torneo, como DT.order. La orden no cambia a ningun
+     * DT hasta que se cierra el mercado, pero pasa por la cola igual que los demas comandos, asi
+     * no se cruza con la apertura o el cierre del mercado. Las ordenes no van al journal: si el
+     * programa se cae antes de cerrar el mercado se pierden, y solo queda lo que ya se aplicó*/
+    public TransferOrder order(DT dt, PhysicalTournament t, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws ClosedWindowException {
+        try {
+            return call(() -> dt.order(t, sells, buys));
+        } catch (ClosedWindowException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Abre el mercado de pases del torneo, como PhysicalTournament.openTransferWindow*/
+    public void openTransferWindow(PhysicalTournament t) {
+        try {
+            call(() -> {
+                t.openTransferWindow();
+                return null;
+            });
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Cierra el mercado de pases del torneo, como PhysicalTournament.closeTransferWindow*/
+    public List<TransferOrder> closeTransferWindow(PhysicalTournament t) {
+        try {
+            return call(t::closeTransferWindow, dtsIn(Collections.singleton(t.getName())));
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Le suma al DT los puntos de los jugadores de su equipo en el torneo, como DT.refreshPoints*/
+    public void refreshPoints(DT dt, PhysicalTournament t, Map<String, PhysicalPlayer.Properties> propertiesMap) {
+        try {
+            call(() -> {
+                dt.refreshPoints(t, propertiesMap);
+                return null;
+            }, dt);
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Sube las estadisticas nuevas de los jugadores, como Administrator.refresh*/
+    public void refresh(Administrator admin, Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> dataTournaments) {
+        try {
+            call(() -> {
+                admin.refresh(dataTournaments);
+                return null;
+            }, dtsIn(dataTournaments.keySet()));
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Sube las estadisticas nuevas de los jugadores, como Administrator.refresh con parallel*/
+    public void refresh(Administrator admin, Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> dataTournaments, boolean parallel) {
+        try {
+            call(() -> {
+                admin.refresh(dataTournaments, parallel);
+                return null;
+            }, dtsIn(dataTournaments.keySet()));
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+    }
+
+    /**
+     * Ejecuta un comando en el hilo que escribe y espera el resultado
+     * @param command el comando
+     * @param changed los DTs que puede cambiar el comando, para actualizar la foto
+     * @return lo que devuelve el comando*/
+    <R> R call(Command<R> command, DT... changed) throws Exception {
+        List<DT> list = new ArrayList<>(changed.length);
+        Collections.addAll(list, changed);
+        return call(command, list);
+    }
+
+    /**
+     * @return true si los comandos se ejecutan en el momento, en este hilo*/
+    private boolean isInline() {
+        return !running || Thread.currentThread() == writer;
+    }
+
+    private <R> R call(Command<R> command, Iterable<DT> changed) throws Exception {
+        if (Thread.currentThread() == writer)
+            return command.run();
+        if (!running) {
+            GameStore previous = store.enter();
+            try {
+                return command.run();
+            } finally {
+                GameStore.exit(previous);
+            }
+        }
+        Pending<R> pending = new Pending<>(command, changed);
+        queue.add(pending);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return pending.result.get(WAIT, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // si el ciclo se detuvo sin verlo, se ejecuta aca
+                    if (!writer.isAlive() && queue.remove(pending)) {
+                        GameStore previous = store.enter();
+                        try {
+                            pending.run();
+                        } finally {
+                            GameStore.exit(previous);
+                        }
+                        pending.complete();
+                    }
+                } catch (InterruptedException e) {
+                    // el comando ya está en la cola, se espera igual
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw (Exception) cause;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Los DTs inscriptos en algunos torneos. Se busca en el hilo que escribe, al ejecutar el comando*/
+    private Iterable<DT> dtsIn(Set<String> tournaments) {
+        return () -> {
+            Set<DT> dts = new LinkedHashSet<>();
+            for (String name : tournaments) {
+                PhysicalTournament t = store.findTournament(name);
+                List<DT> signed = t == null ? null : store.findDTs(t);
+                if (signed != null)
+                    dts.addAll(signed);
+            }
+            return dts.iterator();
+        };
+    }
+
+    private void run() {
+        store.enter();
+        List<Pending<?>> batch = new ArrayList<>();
+        boolean stopped = false;
+        while (!stopped) {
+            Pending<?> first;
+            try {
+                first = queue.poll(store.checkpointDelay(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            // sin comandos tambien se toma la foto cuando vence el intervalo
+            if (first == null) {
+                store.checkpointIfDue();
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, BATCH - 1);
+            Set<DT> changed = new LinkedHashSet<>();
+            for (Pending<?> pending : batch) {
+                if (pending.command == null) {
+                    stopped = true;
+                    continue;
+                }
+                pending.run();
+                for (DT dt : pending.changed)
+                    changed.add(dt);
+            }
+            // se publica la foto antes de avisar, asi el que pidió el cambio ya lo ve
+            if (!changed.isEmpty())
+                snapshot = snapshot.next(changed);
+            for (Pending<?> pending : batch)
+                pending.complete();
+            batch.clear();
+            store.checkpointIfDue();
+        }
+    }
+
+    /**
+     * Las compras y ventas en el momento no se cruzan con el mercado de pases: mientras está abierto
+     * solo se dejan ordenes. Se mira en el hilo que escribe, donde se abre y se cierra el mercado*/
+    private void checkClosed(PhysicalTournament t) throws OpenWindowException {
+        if (store.isTransferWindowOpen(t))
+            throw new OpenWindowException();
+    }
+
+    private static RuntimeException unexpected(Exception e) {
+        return e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+    }
+
+    /**
+     * Un comando en la cola, con su resultado*/
+    private static final class Pending<R> {
+        final Command<R> command;
+        final Iterable<DT> changed;
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        private R value;
+        private Throwable error;
+
+        Pending(Command<R> command, Iterable<DT> changed) {
+            this.command = command;
+            this.changed = changed;
+        }
+
+        void run() {
+            try {
+                value = command.run();
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null)
+                result.completeExceptionally(error);
+            else
+                result.complete(value);
+        }
+    }
+}
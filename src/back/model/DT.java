@@ -1,15 +1,15 @@
 package back.model;
 
+import back.model.exceptions.ClosedWindowException;
 import back.model.exceptions.CompleteTeamException;
 import back.model.exceptions.ExistentNameException;
 import back.model.exceptions.InsufficientFundsException;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Clase que representa un usuario que participa vendiendo y comprando jugadores a lo largo de un torneo.
+ * Las compras y ventas pasan por Transfers, que las hace de a una.
  */
 public class DT extends User {
 
@@ -39,9 +39,8 @@ public class DT extends User {
      * @param t Representa el torneo.
      * @param p Representa el jugador que quiere vender.
      */
-    public void sell(PhysicalTournament t , PhysicalPlayer p) {
-        expenses.sell(t, p);
-        DTTeamsManager.removePlayer(t, p);
+    void sell(PhysicalTournament t , PhysicalPlayer p) {
+        GameStore.current().getTransfers().sell(this, t, p);
     }
 
     /**
@@ -49,18 +48,40 @@ public class DT extends User {
      * @param t Representa el torneo.
      * @param p Representa el jugador que quiere vender.
      */
-    public void buy(PhysicalTournament t, PhysicalPlayer p) throws InsufficientFundsException, CompleteTeamException, ExistentNameException{
-        expenses.buy(t, p);
-        DTTeamsManager.addPlayer(t, p);
+    void buy(PhysicalTournament t, PhysicalPlayer p) throws InsufficientFundsException, CompleteTeamException, ExistentNameException{
+        GameStore.current().getTransfers().buy(this, t, p);
+    }
+
+    /**
+     * Método para vender y comprar varios jugadores de un torneo en una sola operacion: se hace todo
+     * o, si alguna compra no se puede hacer, nada. Primero se vende, asi lo vendido paga lo comprado.
+     * @param t Representa el torneo.
+     * @param sells Los jugadores que quiere vender, los que no tiene se ignoran.
+     * @param buys Los jugadores que quiere comprar.
+     */
+    void transfer(PhysicalTournament t, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws InsufficientFundsException, CompleteTeamException, ExistentNameException {
+        GameStore.current().getTransfers().transfer(this, t, sells, buys);
+    }
+
+    /**
+     * Método para dejar una orden de venta y compra en el mercado de pases de un torneo. La orden se
+     * aplica, entera o nada, cuando el administrador cierra el mercado. Las ordenes pendientes no
+     * se registran en el journal, asi que si el programa se cae antes del cierre se pierden.
+     * @param t Representa el torneo.
+     * @param sells Los jugadores que quiere vender.
+     * @param buys Los jugadores que quiere comprar.
+     * @return La orden, que al cerrar el mercado dice si se pudo aplicar.
+     */
+    TransferOrder order(PhysicalTournament t, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws ClosedWindowException {
+        return TransferWindow.submit(this, t, sells, buys);
     }
 
     /**
      * Método para inscribirse en un torneo en particular.
      * @param t Representa el torneo en el cual desea inscribirse.
      */
-    public void signUp(PhysicalTournament t) {
-        expenses.addNewFund(t);
-        DTTeamsManager.addNewTeam(t);
+    void signUp(PhysicalTournament t) {
+        GameStore.current().getTransfers().signUp(this, t);
     }
 
     /**
@@ -92,8 +113,10 @@ public class DT extends User {
      * @param tour El torneo en cuestión.
      * @param propertiesMap Mapa de los nombres de los jugadores a las Propiedades.
      */
-    public void refreshPoints(PhysicalTournament tour, Map<String, PhysicalPlayer.Properties> propertiesMap) {
+    void refreshPoints(PhysicalTournament tour, Map<String, PhysicalPlayer.Properties> propertiesMap) {
         DTTeamsManager.refreshPoints(propertiesMap, tour);
+        if (tour.getAdministrator() != null)
+            Journal.current().refreshPoints(this, tour, propertiesMap);
     }
 
     @Override
@@ -112,18 +135,4 @@ public class DT extends User {
         result = result * 5;
         return result;
     }
-
-    private void writeObject(ObjectOutputStream out) throws IOException{
-        out.defaultWriteObject();
-        out.writeUTF(name);
-        out.writeObject(expenses);
-        out.writeObject(DTTeamsManager);
-    }
-
-    private void readObject(ObjectInputStream ois) throws IOException,ClassNotFoundException{
-        ois.defaultReadObject();
-        name = ois.readUTF();
-        expenses = (DTWallet)ois.readObject();
-        DTTeamsManager = (DTTeamsManager)ois.readObject();
-    }
 }
\ No newline at end of file
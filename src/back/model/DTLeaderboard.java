@@ -0,0 +1,97 @@
+package back.model;
+
+import java.util.*;
+
+/**
+ * Tabla de posiciones de los DTs de un torneo, ordenados de mayor a menor puntaje y, a igual
+ * puntaje, por nombre. Se mantiene a medida que se inscriben DTs o cambian sus puntos, asi que
+ * el puesto de un DT o una pagina de la tabla cuestan O(log n) y no hace falta ordenar la lista
+ * de inscriptos en cada consulta.
+ */
+final class DTLeaderboard {
+
+    private static final class Entry {
+        final DT dt;
+        final int position;
+        int points;
+
+        Entry(DT dt, int position, int points) {
+            this.dt = dt;
+            this.position = position;
+            this.points = points;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        if (a.points != b.points)
+            return a.points > b.points ? -1 : 1;
+        int c = a.dt.getName().compareTo(b.dt.getName());
+        return c != 0 ? c : Integer.compare(a.position, b.position);
+    };
+
+    private final PhysicalTournament tournament;
+    private final RankTree<Entry> tree = new RankTree<>(ORDER);
+    /** Las entradas en el orden de la lista de inscriptos */
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    private final Map<DT, Entry> byDT = new HashMap<>();
+
+    /**
+     * @param tournament el torneo
+     * @param roster los DTs inscriptos, en orden*/
+    DTLeaderboard(PhysicalTournament tournament, List<DT> roster) {
+        this.tournament = tournament;
+        for (DT dt : roster)
+            add(dt);
+    }
+
+    /**
+     * Agrega un DT inscripto al final de la lista*/
+    void add(DT dt) {
+        Entry entry = new Entry(dt, entries.size(), dt.getPoints(tournament));
+        entries.add(entry);
+        byDT.put(dt, entry);
+        tree.add(entry);
+    }
+
+    /**
+     * Vuelve a ubicar a un DT si cambiaron sus puntos
+     * @param position su posicion en la lista de inscriptos*/
+    void update(int position) {
+        Entry entry = entries.get(position);
+        int points = entry.dt.getPoints(tournament);
+        if (points != entry.points) {
+            tree.remove(entry);
+            entry.points = points;
+            tree.add(entry);
+        }
+    }
+
+    /**
+     * @param dt el DT
+     * @return su puesto, empezando en 1, o 0 si no está inscripto*/
+    int getRanking(DT dt) {
+        Entry entry = byDT.get(dt);
+        return entry == null ? 0 : tree.rank(entry);
+    }
+
+    /**
+     * @param from el primer puesto a devolver, empezando en 0
+     * @param count la cantidad maxima de DTs a devolver
+     * @return los DTs de esos puestos, en orden*/
+    ArrayList<DT> getRange(int from, int count) {
+        int to = Math.min(tree.size(), from + count);
+        ArrayList<DT> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++)
+            page.add(tree.get(i).dt);
+        return page;
+    }
+
+    /**
+     * @return todos los DTs, del primero al ultimo*/
+    ArrayList<DT> getOrdered() {
+        ArrayList<DT> ordered = new ArrayList<>(tree.size());
+        for (Entry entry : tree)
+            ordered.add(entry.dt);
+        return ordered;
+    }
+}
@@ -1,9 +1,13 @@
 package back.model;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import back.model.exceptions.CompleteTeamException;
+import back.model.exceptions.ExistentNameException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Clase que representa el equipo de futbol virtual que un DT haya decidido armar.
@@ -13,6 +17,8 @@ public class DTTeam extends Team implements Serializable{
     private static final long serialVersionUID = 1L;
 
     private int points = 0;
+    /** Indices de los torneos que hay que avisar cuando se compra o vende un jugador */
+    private transient ArrayList<PlayerOwners> listeners;
 
     /**
      * Constructor
@@ -22,6 +28,61 @@ public class DTTeam extends Team implements Serializable{
         super(max_players);
     }
 
+    @Override
+    void addPlayer(PhysicalPlayer p) throws CompleteTeamException, ExistentNameException {
+        super.addPlayer(p);
+        if (listeners != null) {
+            for (PlayerOwners o : listeners)
+                o.bought(this, p);
+        }
+    }
+
+    @Override
+    boolean removePlayer(PhysicalPlayer p) {
+        if (!super.removePlayer(p))
+            return false;
+        if (listeners != null) {
+            for (PlayerOwners o : listeners)
+                o.sold(this, p);
+        }
+        return true;
+    }
+
+    /**
+     * Controla que se pueda hacer una tanda de ventas y compras, sin cambiar el equipo.
+     * Primero se venden y despues se compran, asi un jugador vendido se puede volver a comprar en la
+     * misma tanda. Los jugadores a vender que no están en el equipo se ignoran.
+     * @param sells Los jugadores a vender
+     * @param buys Los jugadores a comprar
+     * @return Los jugadores a vender que están en el equipo, sin repetir
+     */
+    Set<PhysicalPlayer> checkTransfer(List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws CompleteTeamException, ExistentNameException {
+        Set<PhysicalPlayer> sold = new LinkedHashSet<>();
+        for (PhysicalPlayer p : sells) {
+            if (hasPlayer(p))
+                sold.add(p);
+        }
+        if (size() - sold.size() + buys.size() > max_players)
+            throw new CompleteTeamException();
+        Set<PhysicalPlayer> bought = new HashSet<>();
+        for (PhysicalPlayer p : buys) {
+            if (!bought.add(p) || hasPlayer(p) && !sold.contains(p))
+                throw new ExistentNameException();
+        }
+        return sold;
+    }
+
+    /**
+     * Método para que un indice de jugadores se entere de las compras y ventas de este equipo.
+     * @param o El indice
+     */
+    void addListener(PlayerOwners o) {
+        if (listeners == null)
+            listeners = new ArrayList<>(1);
+        if (!listeners.contains(o))
+            listeners.add(o);
+    }
+
     /**
      * Método para actualizar los puntos del usuario que el mismo recibe en función de este equipo.
      * @param p Las propiedades nuevas
@@ -37,6 +98,14 @@ public class DTTeam extends Team implements Serializable{
         return points;
     }
 
+    /**
+     * Método para restaurar los puntos guardados del usuario.
+     * @param points Los puntos
+     */
+    void setUserPoints(int points) {
+        this.points = points;
+    }
+
     @Override
     public boolean equals(Object o) {
         if(!(o instanceof DTTeam))
@@ -44,14 +113,4 @@ public class DTTeam extends Team implements Serializable{
         DTTeam aux = (DTTeam) o;
         return super.equals(aux);
     }
-
-    private void writeObject(ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
-        out.writeInt(points);
-    }
-
-    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-        ois.defaultReadObject();
-        points = ois.readInt();
-    }
 }
@@ -6,10 +6,12 @@ import back.model.exceptions.ExistentNameException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Clase de administración de equipos del DT.
@@ -19,23 +21,31 @@ public class DTTeamsManager implements Serializable{
 
     private static final long serialVersionUID = 1L;
 
-    private Map<PhysicalTournament, DTTeam> teams = new HashMap<>();
+    /** Se serializa como el mapa de antes, para poder leer los archivos viejos */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("teams", Map.class)
+    };
+
+    private transient TournamentMap<DTTeam> teams = new TournamentMap<>();
+    /** El mapa leido del archivo, se pasa a teams la primera vez que se usa, desde cualquier hilo */
+    private transient volatile Map<PhysicalTournament, DTTeam> saved;
 
     /**
      * Método para registrar la creación y uso de un equipo DTTeam en un torneo particular.
      * @param t
      */
     void addNewTeam(PhysicalTournament t) {
-        teams.put(t, new DTTeam(t.getMaxPlayers()));
+        teams().put(t, new DTTeam(t.getMaxPlayers()));
     }
 
     /**
      * Método para remover un jugador comprado de un equipo DTTeam en un torneo en particular.
      * @param t
      * @param p
+     * @return true si el jugador estaba en el equipo
      */
-    void removePlayer(PhysicalTournament t, PhysicalPlayer p) {
-        teams.get(t).removePlayer(p);
+    boolean removePlayer(PhysicalTournament t, PhysicalPlayer p) {
+        return teams().get(t).removePlayer(p);
     }
 
     /**
@@ -44,7 +54,21 @@ public class DTTeamsManager implements Serializable{
      * @param p
      */
     void addPlayer(PhysicalTournament t, PhysicalPlayer p) throws CompleteTeamException, ExistentNameException {
-        teams.get(t).addPlayer(p);
+        teams().get(t).addPlayer(p);
+    }
+
+    /**
+     * Método para aplicar una tanda de ventas y compras ya controlada en el equipo de un torneo.
+     * @param t
+     * @param sells Los jugadores a vender, que están en el equipo
+     * @param buys Los jugadores a comprar
+     */
+    void transfer(PhysicalTournament t, Collection<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws CompleteTeamException, ExistentNameException {
+        DTTeam team = teams().get(t);
+        for (PhysicalPlayer p : sells)
+            team.removePlayer(p);
+        for (PhysicalPlayer p : buys)
+            team.addPlayer(p);
     }
 
     /**
@@ -53,7 +77,7 @@ public class DTTeamsManager implements Serializable{
      * @return Si participa o no
      */
     boolean isParticipating(PhysicalTournament t) {
-        return teams.containsKey(t);
+        return teams().containsKey(t);
     }
 
     /**
@@ -61,29 +85,46 @@ public class DTTeamsManager implements Serializable{
      * @param t
      * @return Arreglo de PhysicalPlayers del torneo
      */
-    public ArrayList<PhysicalPlayer> getUserTeamPlayers(PhysicalTournament t) {
-        return teams.get(t).getPhysicalPlayers();
+    public List<PhysicalPlayer> getUserTeamPlayers(PhysicalTournament t) {
+        return teams().get(t).getPhysicalPlayers();
     }
 
     /**
-     * Método para conseguir los puntos de un usuario en un torneo particular.
+     * Método para conseguir los torneos en los que participa el usuario.
+     * @return Torneos del usuario
+     */
+    Set<PhysicalTournament> getTournaments() {
+        return teams().keySet();
+    }
+
+    /**
+     * Método para conseguir el equipo del usuario en un torneo particular.
      * @param t
-     * @return Puntos del usuario en el torneo t
+     * @return El equipo del usuario en el torneo t
      */
-    int getUserPoints(PhysicalTournament t) {
-        if (teams.get(t)==null)
-            return 0;
-        return teams.get(t).getUserPoints();
+    DTTeam getTeam(PhysicalTournament t) {
+        return teams().get(t);
     }
 
-    private void writeObject(ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
-        out.writeObject(teams);
+    /**
+     * Método para restaurar un equipo guardado del usuario.
+     * @param t
+     * @param team
+     */
+    void restoreTeam(PhysicalTournament t, DTTeam team) {
+        teams().put(t, team);
     }
 
-    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-        ois.defaultReadObject();
-        teams = (Map<PhysicalTournament, DTTeam>) ois.readObject();
+    /**
+     * Método para conseguir los puntos de un usuario en un torneo particular.
+     * @param t
+     * @return Puntos del usuario en el torneo t
+     */
+    int getUserPoints(PhysicalTournament t) {
+        DTTeam team = teams().get(t);
+        if (team == null)
+            return 0;
+        return team.getUserPoints();
     }
 
     /**
@@ -92,14 +133,37 @@ public class DTTeamsManager implements Serializable{
      * @param tour
      */
     void refreshPoints(Map<String, PhysicalPlayer.Properties> propertiesMap, PhysicalTournament tour) {
-        DTTeam t = teams.get(tour);
+        DTTeam t = teams().get(tour);
         for(PhysicalPlayer p : t.getPhysicalPlayers()) {
-            for(String name : propertiesMap.keySet()) {
-                if(p.getName().equals(name)) {
-                    t.refreshPoints(propertiesMap.get(p.getName()));
+            PhysicalPlayer.Properties properties = propertiesMap.get(p.getName());
+            if(properties != null)
+                t.refreshPoints(properties);
+        }
+    }
+
+    private TournamentMap<DTTeam> teams() {
+        if (saved != null) {
+            synchronized (this) {
+                if (saved != null) {
+                    teams = new TournamentMap<>(saved);
+                    saved = null;
                 }
             }
         }
+        return teams;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("teams", saved != null ? saved : teams.toMap());
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        // los torneos del mapa pueden no estar terminados de leer, se pasan a teams despues
+        saved = (Map<PhysicalTournament, DTTeam>) fields.get("teams", null);
     }
 
 }
@@ -5,45 +5,125 @@ import back.model.exceptions.InsufficientFundsException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Clase que maneja las expensas de un usuario.
+ * Los fondos de cada torneo se guardan como enteros en una tabla por numero de torneo, asi que
+ * comprar y vender no crean objetos. Los torneos sin numero se buscan por nombre.
  */
 public class DTWallet implements Serializable{
 
     private static final long serialVersionUID = 1L;
 
-    private Map<PhysicalTournament, Integer> funds = new HashMap<>();
     private static final int INITIAL_AMOUNT = 20000;
+    private static final int FREE = -1;
+    /** Se serializa como el mapa de antes, para poder leer los archivos viejos */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("funds", Map.class)
+    };
+
+    /** Numero de torneo de cada lugar de la tabla, FREE si está vacio */
+    private transient int[] ids;
+    /** Posicion en tournaments del torneo de cada lugar de la tabla */
+    private transient int[] entries;
+    /** Los torneos y sus fondos, en el orden en que se agregaron */
+    private transient PhysicalTournament[] tournaments;
+    private transient int[] amounts;
+    private transient int size;
+    /** Cantidad de torneos sin numero */
+    private transient int unnumbered;
+    /** El mapa leido del archivo, se pasa a la tabla la primera vez que se usa, desde cualquier hilo */
+    private transient volatile Map<PhysicalTournament, Integer> saved;
+
+    public DTWallet() {
+        init(4);
+    }
+
+    private void init(int capacity) {
+        ids = new int[capacity];
+        Arrays.fill(ids, FREE);
+        entries = new int[capacity];
+        amounts = new int[capacity];
+        tournaments = new PhysicalTournament[capacity];
+        size = 0;
+        unnumbered = 0;
+    }
 
     /**
-     * Método que determina si el usuario tiene suficientes fondos para comprar un jugador según los fondos del torneo en particular.
+     * Método que registra nuevos fondos para un torneo en particular.
      * @param t
-     * @param p
-     * @return Si tiene suficientes fondos para comprar el jugador
      */
-    private boolean hasEnough(PhysicalTournament t, PhysicalPlayer p) {
-        return funds.get(t) >= p.getPrice();
+    void addNewFund(PhysicalTournament t) {
+        setFunds(t, INITIAL_AMOUNT);
     }
 
     /**
-     * Método que registra nuevos fondos para un torneo en particular.
+     * Método que restaura los fondos guardados para un torneo en particular.
      * @param t
+     * @param amount
      */
-    void addNewFund(PhysicalTournament t) {
-        funds.put(t, INITIAL_AMOUNT);
+    void setFunds(PhysicalTournament t, int amount) {
+        load();
+        put(t, amount);
+    }
+
+    private void put(PhysicalTournament t, int amount) {
+        int k = find(t);
+        if (k < 0) {
+            if ((size + 1) * 2 > ids.length)
+                grow();
+            k = size++;
+            tournaments[k] = t;
+            index(t, k);
+        }
+        amounts[k] = amount;
+    }
+
+    private void index(PhysicalTournament t, int k) {
+        int id = t.getId();
+        if (id == PhysicalTournament.NO_ID) {
+            unnumbered++;
+        } else {
+            int i = slot(id);
+            ids[i] = id;
+            entries[i] = k;
+        }
+    }
+
+    /**
+     * @return la posicion del torneo en tournaments, o -1 si no está*/
+    private int find(PhysicalTournament t) {
+        int id = t.getId();
+        if (id != PhysicalTournament.NO_ID) {
+            int i = slot(id);
+            if (ids[i] != FREE)
+                return entries[i];
+            if (unnumbered == 0)
+                return -1;
+        }
+        for (int k = 0; k < size; k++) {
+            if (tournaments[k].getName().equals(t.getName()))
+                return k;
+        }
+        return -1;
     }
 
     /**
      * Método que devuelve la cantidad de fondos del usuario disponibles en un torneo en particular.
      * @param t
-     * @return Fondos del usuario en el torneo
+     * @return Fondos del usuario en el torneo, 0 si no está inscripto
      */
     public int getAvailableFunds(PhysicalTournament t) {
-        return funds.get(t);
+        load();
+        int k = find(t);
+        return k < 0 ? 0 : amounts[k];
     }
 
     /**
@@ -52,9 +132,10 @@ public class DTWallet implements Serializable{
      * @param p
      */
     void sell(PhysicalTournament t, PhysicalPlayer p) {
-        Integer aux = funds.get(t);
-        aux += p.getPrice();
-        funds.put(t, aux);
+        load();
+        int k = find(t);
+        if (k >= 0)
+            amounts[k] += p.getPrice();
     }
 
     /**
@@ -64,19 +145,95 @@ public class DTWallet implements Serializable{
      * @throws InsufficientFundsException
      */
     void buy(PhysicalTournament t, PhysicalPlayer p) throws InsufficientFundsException{
-        if(!(hasEnough(t, p))) throw new InsufficientFundsException();
-        Integer aux = funds.get(t);
-        aux -= p.getPrice();
-        funds.put(t, aux);
+        if (!debit(t, p.getPrice()))
+            throw new InsufficientFundsException();
+    }
+
+    /**
+     * Vende y compra varios jugadores de un torneo de una sola vez: lo que se vende paga lo que se
+     * compra, y si no alcanzan los fondos para todo no se cambia nada.
+     * @param t
+     * @param sells
+     * @param buys
+     * @throws InsufficientFundsException
+     */
+    void transfer(PhysicalTournament t, Collection<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws InsufficientFundsException {
+        long total = 0;
+        for (int k = 0; k < buys.size(); k++)
+            total += buys.get(k).getPrice();
+        for (PhysicalPlayer p : sells)
+            total -= p.getPrice();
+        if (total > Integer.MAX_VALUE || total < Integer.MIN_VALUE || !debit(t, (int) total))
+            throw new InsufficientFundsException();
+    }
+
+    /**
+     * Descuenta un monto si alcanzan los fondos, con una sola busqueda en la tabla. Un monto
+     * negativo se acredita.
+     * @return true si se descontó, false si no alcanzan o no está inscripto en el torneo*/
+    private boolean debit(PhysicalTournament t, int amount) {
+        load();
+        int k = find(t);
+        if (k < 0 || amounts[k] < amount)
+            return false;
+        amounts[k] -= amount;
+        return true;
+    }
+
+    private int slot(int id) {
+        int mask = ids.length - 1;
+        int i = TournamentMap.home(id, mask);
+        while (ids[i] != FREE && ids[i] != id)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        int[] oldAmounts = amounts;
+        PhysicalTournament[] oldTournaments = tournaments;
+        int count = size;
+        init(ids.length * 2);
+        for (int k = 0; k < count; k++) {
+            tournaments[k] = oldTournaments[k];
+            amounts[k] = oldAmounts[k];
+            index(oldTournaments[k], k);
+        }
+        size = count;
+    }
+
+    /**
+     * Pasa a la tabla los fondos leidos de un archivo. saved se borra al final, asi otro hilo que
+     * lo ve en null ya ve la tabla completa*/
+    private void load() {
+        if (saved != null) {
+            synchronized (this) {
+                Map<PhysicalTournament, Integer> map = saved;
+                if (map != null) {
+                    for (Map.Entry<PhysicalTournament, Integer> e : map.entrySet())
+                        put(e.getKey(), e.getValue());
+                    saved = null;
+                }
+            }
+        }
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
-        out.defaultWriteObject();
-        out.writeObject(funds);
+        Map<PhysicalTournament, Integer> funds = saved;
+        if (funds == null) {
+            funds = new HashMap<>();
+            for (int k = 0; k < size; k++)
+                funds.put(tournaments[k], amounts[k]);
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("funds", funds);
+        out.writeFields();
     }
 
-    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-        ois.defaultReadObject();
-        funds = (Map<PhysicalTournament, Integer>) ois.readObject();
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        // los torneos del mapa pueden no estar terminados de leer, se pasan a la tabla despues
+        saved = (Map<PhysicalTournament, Integer>) fields.get("funds", null);
+        init(4);
     }
 }
@@ -1,44 +1,133 @@
 package back.model;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
 
 /**
- * Se ocupa de guardar la inforacion del Juego, es llamada por AccountsManager
- * cuando está necesita buscar informacion y cuando necesita guardar*/
+ * Se ocupa de guardar la inforacion del Juego, es llamada por GameStore
+ * cuando está necesita buscar informacion y cuando necesita guardar.
+ * Cada almacen tiene el suyo, con su propio directorio*/
 class FileManager {
 
+    private static final String DEFAULT_DIRECTORY = "src/resources";
+
+    private final String directory;
+
+    /**
+     * @param path el directorio donde se guardan los archivos, null para usar el directorio por defecto*/
+    FileManager(String path) {
+        directory = path == null ? DEFAULT_DIRECTORY : path;
+    }
+
     /**Busca el path al directorio donde están guardados los archivos
      * @return el path del directorio*/
-    private static String getResourcesDirectory() {
-        File resourcesDirectory = new File("src/resources");
+    private String getResourcesDirectory() {
+        File resourcesDirectory = new File(directory);
         return resourcesDirectory.getAbsoluteFile().toString();
     }
     /**
-     * Guarda un objeto en el archivo
-     * @param obj el objeto a guardar
-     * @param fileName el nombre del archivo donde guardar el objeto*/
-    static void writeToFile(Object obj, String fileName) throws IOException, ClassNotFoundException{
-        String resourceDirectory = getResourcesDirectory();
-        ObjectOutputStream outStream = null;
-        outStream = new ObjectOutputStream(new FileOutputStream(resourceDirectory + "/" + fileName));
-        outStream.writeObject(obj);
-        if (outStream != null)
-            outStream.close();
+     * @param fileName el nombre del archivo
+     * @return el archivo dentro del directorio de recursos*/
+    File getFile(String fileName) {
+        return new File(getResourcesDirectory(), fileName);
     }
     /**
-     * Busca un objeto en el archivo
-     * @param fileName el nombre del archivo donde buscar el objeto*/
-    static Object readFromFile(String fileName) throws IOException, ClassNotFoundException {
-        String resourceDirectory = getResourcesDirectory();
-        String filePath = resourceDirectory + "/" + fileName;
-        Object obj = null;
+     * Guarda una foto capturada con SnapshotWriter.capture, en su formato binario.
+     * Primero se escriben los archivos de los administradores que cambiaron, con nombres nuevos,
+     * y despues el indice que los usa. Cada archivo se escribe a uno temporal que despues reemplaza
+     * al original, asi un corte a mitad de la escritura deja la foto anterior entera.
+     * Al final se borran los archivos de administradores que el indice nuevo ya no usa, salvo los
+     * de la foto de la que se cargaron las cuentas, que se borran al volver a abrirla.
+     * No toca el modelo, asi que puede llamarse desde otro hilo.
+     * @param snapshot la foto capturada
+     * @param fileName el nombre del indice*/
+    void writeSnapshot(SnapshotWriter snapshot, String fileName) throws IOException {
+        File target = getFile(fileName);
+        SnapshotWriter.Image image = snapshot.toImage();
+        for (Map.Entry<Integer, byte[]> shard : image.shards.entrySet())
+            writeAtomically(MappedSnapshot.getShardFile(target, shard.getKey(), image.generation), shard.getValue());
+        writeAtomically(target, image.index);
+        deleteShards(target, image.shardGenerations, snapshot.getBase());
+    }
+
+    /**
+     * Borra los archivos de administradores que no usa el indice. Los que usa la foto mapeada no se
+     * borran aunque el indice ya no los use: mientras está abierta no se pueden borrar en todos los
+     * sistemas, y quedan hasta la proxima vez que se abra la foto
+     * @param target el indice
+     * @param shardGenerations la foto en la que se escribió cada archivo que usa el indice, null si
+     * es el de la foto mapeada
+     * @param mapped la foto mapeada, null si no hay*/
+    private static void deleteShards(File target, int[] shardGenerations, MappedSnapshot mapped) {
+        String prefix = target.getName() + ".";
+        File[] files = target.getAbsoluteFile().getParentFile().listFiles();
+        for (File f : files == null ? new File[0] : files) {
+            String name = f.getName();
+            if (!name.startsWith(prefix) || !name.substring(prefix.length()).matches("\\d+-\\d+"))
+                continue;
+            String[] parts = name.substring(prefix.length()).split("-");
+            int owner = Integer.parseInt(parts[0]);
+            int generation = Integer.parseInt(parts[1]);
+            boolean used = shardGenerations != null && owner < shardGenerations.length && shardGenerations[owner] == generation;
+            boolean open = mapped != null && owner < mapped.getUserCount() && mapped.getShardGeneration(owner) == generation;
+            if (!used && !open)
+                f.delete();
+        }
+    }
+
+    private static void writeAtomically(File target, byte[] data) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fileStream = new FileOutputStream(temp)) {
+            fileStream.write(data);
+            fileStream.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    /**
+     * Abre la foto guardada por writeSnapshot mapeandola en memoria, sin leer los usuarios.
+     * Los archivos de los administradores se mapean en paralelo.
+     * Tambien acepta los archivos viejos escritos con la serializacion de java, que se leen
+     * enteros y se toman como anteriores a cualquier registro del journal.
+     * @param fileName el nombre del archivo
+     * @return la foto, vacia si el archivo no existe o está vacio*/
+    Snapshot readSnapshot(String fileName) throws IOException, ClassNotFoundException {
+        File file = getFile(fileName);
         // si el archivo está vacio, no nos gastamos en abrirlo
-        if (new File(filePath).length() != 0){
-            ObjectInputStream inputStream;
-            inputStream = new ObjectInputStream(new FileInputStream(filePath));
-            obj = inputStream.readObject();
-            inputStream.close();
+        if (file.length() == 0)
+            return new Snapshot(null, new ArrayList<>(), 0);
+        byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(magic);
+        } catch (EOFException e) {
+            // tan corto que no puede ser una foto nuestra
+        }
+        if (MappedSnapshot.accepts(magic)) {
+            MappedSnapshot base = MappedSnapshot.open(file);
+            // lo que dejaron las fotos anteriores ya no está mapeado
+            deleteShards(file, null, base);
+            return new Snapshot(base, new ArrayList<>(), base.getSequence());
+        }
+        try (ObjectInputStream inputStream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return new Snapshot(null, (ArrayList<User>) inputStream.readObject(), 0);
+        }
+    }
+
+    /**
+     * Foto de las cuentas y el ultimo registro del journal que ya contiene.
+     * Los usuarios de la foto mapeada se arman a medida que se piden, users tiene los que
+     * no están en ella*/
+    static class Snapshot {
+        final MappedSnapshot base;
+        final ArrayList<User> users;
+        final long sequence;
+
+        Snapshot(MappedSnapshot base, ArrayList<User> users, long sequence) {
+            this.base = base;
+            this.users = users;
+            this.sequence = sequence;
         }
-        return obj;
     }
 }
@@ -0,0 +1,68 @@
+package back.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Lista de solo lectura que nunca cambia. Cuando cambia lo que representa se arma otra, asi que si
+ * una lista es la misma (==) que la anterior no cambió nada y se puede seguir usando sin copiarla.
+ * Agregar al final con with comparte el arreglo con la lista anterior: la anterior solo ve sus
+ * primeros elementos, asi que los que se agregan despues no la cambian.
+ */
+final class FrozenList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final FrozenList<?> EMPTY = new FrozenList<>(new Object[0], 0);
+
+    private final Object[] items;
+    private final int size;
+    /** true si ya hay otra lista que usa el lugar siguiente del arreglo */
+    private boolean extended;
+
+    private FrozenList(Object[] items, int size) {
+        this.items = items;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> FrozenList<E> empty() {
+        return (FrozenList<E>) EMPTY;
+    }
+
+    static <E> FrozenList<E> copyOf(Collection<? extends E> c) {
+        return wrap(c.toArray());
+    }
+
+    /**
+     * @param items los elementos, el arreglo no se copia asi que no se tiene que cambiar despues*/
+    static <E> FrozenList<E> wrap(Object[] items) {
+        return items.length == 0 ? FrozenList.<E>empty() : new FrozenList<>(items, items.length);
+    }
+
+    /**
+     * @param e el elemento a agregar
+     * @return una lista con los mismos elementos y e al final*/
+    synchronized FrozenList<E> with(E e) {
+        Object[] next = items;
+        if (extended || size == items.length)
+            next = Arrays.copyOf(items, Math.max(4, size * 2));
+        else
+            extended = true;
+        next[size] = e;
+        return new FrozenList<>(next, size + 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return (E) items[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,322 @@
+package back.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Almacen de una liga: sus cuentas, el directorio de torneos, el journal, las fotos y el hilo que
+ * aplica los cambios. Cada almacen usa su propio directorio y no comparte nada con los demas, asi
+ * que en un mismo programa puede haber varias ligas, y varias sesiones en cada una.
+ * Los objetos del modelo no saben de que almacen son: sus cambios solo se hacen a traves del
+ * CommandLoop del almacen, que los ejecuta con el almacen como el del hilo, asi lo que registran va
+ * al journal de ese almacen y no al de otro.
+ */
+public final class GameStore {
+
+    private static final String SNAPSHOT_FILE = "accountsData.temp";
+    private static final String JOURNAL_FILE = "accountsData.journal";
+    private static final Logger LOG = Logger.getLogger(GameStore.class.getName());
+
+    /** El almacen en el que se está trabajando en cada hilo, null si no hay ninguno */
+    private static final ThreadLocal<GameStore> CURRENT = new ThreadLocal<>();
+
+    private final FileManager files;
+    private final Journal journal = new Journal(this);
+    private final Checkpointer checkpointer = new Checkpointer();
+    private final Transfers transfers = new Transfers();
+    /** Los mercados de pases abiertos, por nombre de torneo */
+    private final Map<String, TransferWindow> windows = new ConcurrentHashMap<>();
+    private final CommandLoop commands = new CommandLoop(this);
+    /** Las cuentas cargadas, las de la foto se arman cuando se piden */
+    private AccountRegistry accounts = new AccountRegistry(null, new ArrayList<>());
+    /** Numero de la ultima foto escrita o cargada */
+    private int generation;
+
+    /**
+     * Arma un almacen vacio, que no guarda nada hasta que se abra
+     * @param directory directorio de los archivos, null para usar el directorio por defecto*/
+    GameStore(String directory) {
+        files = new FileManager(directory);
+    }
+
+    /**
+     * Arma un almacen en memoria, que no se abre: no lee ni registra nada, y como su ciclo de
+     * comandos no arranca los cambios se aplican en el hilo que los pide. Sirve para los tests y
+     * para armar ligas de prueba
+     * @return el almacen vacio*/
+    public static GameStore create() {
+        return new GameStore(null);
+    }
+
+    /**
+     * Abre la ultima foto guardada en un directorio y le reaplica los cambios registrados en el
+     * journal desde entonces. Los usuarios y torneos de la foto se leen recien cuando se usan
+     * @param directory directorio de los archivos, null para usar el directorio por defecto
+     * @return el almacen, con su hilo de cambios andando*/
+    public static GameStore open(String directory) throws IOException, ClassNotFoundException {
+        GameStore store = new GameStore(directory);
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException, ClassNotFoundException {
+        FileManager.Snapshot snapshot = files.readSnapshot(SNAPSHOT_FILE);
+        accounts = new AccountRegistry(snapshot.base, snapshot.users);
+        generation = snapshot.base == null ? 0 : snapshot.base.getGeneration();
+        GameStore previous = enter();
+        try {
+            for (User u : snapshot.users) {
+                if (u instanceof Administrator)
+                    ((Administrator) u).attachTournaments();
+            }
+            checkpointer.reset();
+            journal.open(files.getFile(JOURNAL_FILE), snapshot.sequence);
+        } finally {
+            exit(previous);
+        }
+        commands.start();
+    }
+
+    /**
+     * @return el almacen en el que se está trabajando en este hilo
+     * @throws IllegalStateException si el cambio no se pidió a traves del CommandLoop de un almacen*/
+    static GameStore current() {
+        GameStore store = CURRENT.get();
+        if (store == null)
+            throw new IllegalStateException("Los cambios se hacen a traves del CommandLoop de un GameStore");
+        return store;
+    }
+
+    /**
+     * Hace que este sea el almacen del hilo actual
+     * @return el almacen que tenia el hilo antes, para devolverselo con exit*/
+    GameStore enter() {
+        GameStore previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Le devuelve al hilo actual el almacen que tenia antes de enter
+     * @param previous lo que devolvió enter*/
+    static void exit(GameStore previous) {
+        // se deja null en vez de sacarlo, asi entrar y salir no crea objetos
+        CURRENT.set(previous);
+    }
+
+    /**
+     * Abre una sesion con una cuenta del almacen. La cuenta se busca en el hilo que escribe, asi
+     * dos sesiones de la misma cuenta tienen el mismo usuario
+     * @param accountName el nombre de la cuenta
+     * @return la sesion, o null si la cuenta no existe*/
+    public Session login(String accountName) {
+        User account = commands.read(() -> getAccount(accountName));
+        return account == null ? null : new Session(this, account);
+    }
+
+    /**
+     * @return el punto de entrada de los cambios sobre las cuentas de este almacen*/
+    public CommandLoop getCommands() {
+        return commands;
+    }
+
+    /**
+     * @return todos los administradores, en una lista que no cambia aunque se creen otros*/
+    public List<Administrator> getAdmins() {
+        return commands.read(() -> Collections.unmodifiableList(new ArrayList<>(accounts.getAdmins())));
+    }
+
+    /**
+     * Crea un administrador
+     * @param username El nombre del administrador
+     * @return false si el nombre está vacio*/
+    boolean createAdmin(String username) {
+        if(username.equals(""))
+            return false;
+        accounts.add(new Administrator(username));
+        journal.createAdmin(username);
+        return true;
+    }
+
+    /**
+     * Crea un DT
+     * @param username El nombre del DT
+     * @return false si el nombre está vacio*/
+    boolean createDT(String username) {
+        if(username.equals(""))
+            return false;
+        accounts.add(new DT(username));
+        journal.createDT(username);
+        return true;
+    }
+
+    /**
+     * @param username nombre de la cuenta a buscar
+     * @return true si la cuenta existe*/
+    public boolean contains(String username) {
+        return !username.equals("") && commands.read(() -> getAccount(username) != null);
+    }
+
+    /**
+     * @return una lista nueva con los DTs inscriptos en el torneo, en orden, o null si el torneo no
+     * es de este almacen*/
+    public ArrayList<DT> getDTsInTournament(PhysicalTournament physicalTournament) {
+        return commands.read(() -> findDTs(physicalTournament));
+    }
+
+    /**
+     * Como getDTsInTournament, pero en el hilo en el que se llama. Es para el hilo que escribe*/
+    ArrayList<DT> findDTs(PhysicalTournament physicalTournament) {
+        Administrator owner = accounts.getOwner(physicalTournament.getName());
+        return owner == null ? null : owner.getOrderedDTs(physicalTournament);
+    }
+
+    /**
+     * @param t el torneo
+     * @return true si el mercado de pases del torneo está abierto*/
+    public boolean isTransferWindowOpen(PhysicalTournament t) {
+        return windows.containsKey(t.getName());
+    }
+
+    /**
+     * Busca una cuenta, leyendola de la foto si hace falta. Arma el usuario la primera vez que se
+     * pide, asi que solo se llama desde el hilo que escribe (o mientras se carga el journal)
+     * @param accountname El nombre de la cuenta
+     * @return la cuenta, o null si no existe*/
+    User getAccount(String accountname) {
+        return accounts.get(accountname);
+    }
+
+    /**
+     * Busca un torneo entre los de todos los administradores
+     * @param name el nombre del torneo
+     * @return el torneo, sin copiar, o null si no existe*/
+    PhysicalTournament findTournament(String name) {
+        Administrator owner = accounts.getOwner(name);
+        return owner == null ? null : owner.getTournament(name);
+    }
+
+    /**
+     * Anota en el directorio de torneos que el torneo es del administrador
+     * @param owner el administrador
+     * @param t el torneo nuevo*/
+    void tournamentAdded(Administrator owner, PhysicalTournament t) {
+        accounts.addTournament(owner, t);
+    }
+
+    Journal getJournal() {
+        return journal;
+    }
+
+    Checkpointer getCheckpointer() {
+        return checkpointer;
+    }
+
+    Transfers getTransfers() {
+        return transfers;
+    }
+
+    Map<String, TransferWindow> getWindows() {
+        return windows;
+    }
+
+    /**
+     * Cambia cada cuanto se toma una foto de las cuentas en segundo plano
+     * @param mutations cantidad de operaciones a partir de la cual se toma una foto
+     * @param intervalMillis milisegundos a partir de los cuales se toma una foto si hubo cambios*/
+    public void setCheckpointPolicy(int mutations, long intervalMillis) {
+        checkpointer.configure(mutations, intervalMillis);
+    }
+
+    /**
+     * Guarda la foto completa y vacia el journal, ya que todos sus cambios quedan contenidos en ella.
+     * Lo que nunca se leyó de la foto anterior se copia tal cual
+     * */
+    public void save() throws IOException {
+        try {
+            commands.call(() -> {
+                checkpointer.await();
+                journal.sync();
+                files.writeSnapshot(SnapshotWriter.capture(accounts.getSnapshot(), accounts.getCreated(), journal.getSequence(), ++generation), SNAPSHOT_FILE);
+                journal.truncate();
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Toma una foto si corresponde. Lo llama el hilo que escribe entre dos tandas, cuando no hay
+     * ninguna operacion a medias*/
+    void checkpointIfDue() {
+        if (!checkpointer.isDue(journal.getPending()))
+            return;
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // si no se pudo tomar la foto el journal sigue siendo valido, se reintenta en la proxima
+            // tanda. No se deja pasar nada, si no se muere el hilo que escribe
+            LOG.log(Level.WARNING, "No se pudo tomar la foto de las cuentas", e);
+        }
+    }
+
+    /**
+     * @return milisegundos que el hilo que escribe puede esperar comandos antes de tener que tomar
+     * una foto por tiempo*/
+    long checkpointDelay() {
+        return checkpointer.delay(journal.getPending());
+    }
+
+    /**
+     * Toma una foto sin esperar a que se escriba: en este hilo solo se captura una vista inmutable
+     * del estado actual y el journal sigue en un segmento nuevo. La foto se codifica y se escribe
+     * en segundo plano, y una vez escrita se borran los segmentos que contiene.
+     * */
+    void checkpoint() throws IOException {
+        journal.roll();
+        SnapshotWriter capture = SnapshotWriter.capture(accounts.getSnapshot(), accounts.getCreated(), journal.getSequence(), ++generation);
+        checkpointer.submit(() -> {
+            try {
+                files.writeSnapshot(capture, SNAPSHOT_FILE);
+                journal.dropSegments(capture.getSequence());
+            } catch (IOException e) {
+                // los segmentos quedan, la proxima foto los incluye
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Aplica los cambios pendientes, espera la foto en curso, baja a disco los ultimos cambios
+     * registrados y cierra el journal. No reescribe la foto, por lo que cuesta lo que cuesten los
+     * cambios pendientes
+     * */
+    public void close() throws IOException {
+        commands.stop();
+        checkpointer.shutdown();
+        journal.close();
+    }
+
+    /**
+     * @return los usuarios que no están en la foto, para serializarlos*/
+    ArrayList<User> getCreated() {
+        return accounts.getCreated();
+    }
+
+    /**
+     * Reemplaza las cuentas por las de una lista serializada
+     * @param users los usuarios*/
+    void restore(ArrayList<User> users) {
+        accounts = new AccountRegistry(null, users);
+    }
+}
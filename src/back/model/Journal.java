@@ -0,0 +1,576 @@
+package back.model;
+
+import back.model.exceptions.CompleteTeamException;
+import back.model.exceptions.ExistentNameException;
+import back.model.exceptions.InsufficientFundsException;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Registro de solo escritura al final con cada cambio hecho sobre el modelo.
+ * Cada operacion (crear cuentas, torneos, equipos, jugadores, inscripciones, compras,
+ * ventas, refresh del administrador y puntos sumados a un DT) agrega un registro chico al
+ * archivo, por lo que guardar cuesta lo que cuestan los cambios y no lo que pesa toda la base.
+ * Los registros se sincronizan a disco de a tandas y cada tanto se compactan en una foto completa.
+ * Mientras no esté abierto (por ejemplo en los tests del modelo) no registra nada.
+ * Cada GameStore tiene su journal. Los registros pueden llegar desde varios hilos a la vez (ver
+ * Transfers), asi que los metodos que escriben están sincronizados.
+ */
+final class Journal {
+
+    private static final byte CREATE_ADMIN = 1;
+    private static final byte CREATE_DT = 2;
+    private static final byte ADD_TOURNAMENT = 3;
+    private static final byte ADD_TEAM = 4;
+    private static final byte ADD_PLAYER = 5;
+    private static final byte ADD_DT = 6;
+    private static final byte SIGN_UP = 7;
+    private static final byte BUY = 8;
+    private static final byte SELL = 9;
+    private static final byte REFRESH = 10;
+    private static final byte TRANSFER = 11;
+    private static final byte REFRESH_POINTS = 12;
+
+    /** Cantidad de registros que se acumulan antes de sincronizar a disco */
+    private static final int SYNC_EVERY = 16;
+
+    private static final int PROPERTIES = PhysicalPlayer.Properties.PropValues.values().length;
+
+    private final GameStore store;
+    private File file;
+    private FileChannel channel;
+    private DataOutputStream out;
+    private boolean replaying;
+    private long sequence;
+    private int unsynced;
+    private int pending;
+
+    private final RecordBuffer buffer = new RecordBuffer();
+    private final DataOutputStream record = new DataOutputStream(buffer);
+    private final CRC32 crc = new CRC32();
+
+    Journal(GameStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return el journal del almacen en el que se está trabajando en este hilo*/
+    static Journal current() {
+        return GameStore.current().getJournal();
+    }
+
+    /**
+     * Abre el journal y reaplica los registros posteriores a la foto cargada, primero los de
+     * los segmentos cerrados por roll que la foto todavia no contiene y despues los del archivo actual.
+     * Un registro cortado al final del archivo (por ejemplo por un corte de luz) se descarta.
+     * @param file el archivo del journal
+     * @param snapshotSequence ultimo registro ya contenido en la foto*/
+    synchronized void open(File file, long snapshotSequence) throws IOException {
+        close();
+        this.file = file;
+        sequence = snapshotSequence;
+        pending = 0;
+        dropSegments(snapshotSequence);
+        for (File segment : getSegments()) {
+            try (FileChannel rolled = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+                replay(rolled, snapshotSequence);
+            }
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid;
+        try {
+            valid = replay(channel, snapshotSequence);
+        } catch (IOException e) {
+            channel.close();
+            channel = null;
+            throw e;
+        }
+        channel.truncate(valid);
+        channel.position(valid);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Cierra el archivo actual como un segmento y sigue escribiendo en uno nuevo, asi la foto
+     * de lo anterior se puede escribir mientras se siguen registrando cambios.
+     * El segmento se llama como el journal seguido del numero de su ultimo registro.*/
+    synchronized void roll() throws IOException {
+        if (channel == null)
+            return;
+        sync();
+        channel.close();
+        Files.move(file.toPath(), new File(file.getPath() + "." + sequence).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        pending = 0;
+    }
+
+    /**
+     * Borra los segmentos que ya están contenidos en una foto. Puede llamarse desde otro hilo.
+     * @param snapshotSequence ultimo registro contenido en la foto*/
+    void dropSegments(long snapshotSequence) {
+        for (File segment : getSegments()) {
+            if (getSegmentSequence(segment) <= snapshotSequence)
+                segment.delete();
+        }
+    }
+
+    /**
+     * @return los segmentos cerrados por roll, ordenados*/
+    private List<File> getSegments() {
+        String prefix = file.getName() + ".";
+        File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+        List<File> segments = new ArrayList<>();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().startsWith(prefix) && getSegmentSequence(f) >= 0)
+                    segments.add(f);
+            }
+        }
+        segments.sort(Comparator.comparingLong(this::getSegmentSequence));
+        return segments;
+    }
+
+    private long getSegmentSequence(File segment) {
+        try {
+            return Long.parseLong(segment.getName().substring(file.getName().length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Sincroniza lo pendiente y cierra el archivo*/
+    synchronized void close() throws IOException {
+        if (channel == null)
+            return;
+        sync();
+        out = null;
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * Baja a disco los registros acumulados*/
+    synchronized void sync() throws IOException {
+        if (channel == null)
+            return;
+        out.flush();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Vacia el journal, se llama una vez que la foto completa ya está guardada*/
+    synchronized void truncate() throws IOException {
+        if (channel == null)
+            return;
+        dropSegments(sequence);
+        out.flush();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        unsynced = 0;
+        pending = 0;
+    }
+
+    /**
+     * @return el numero del ultimo registro escrito*/
+    synchronized long getSequence() {
+        return sequence;
+    }
+
+    private boolean isRecording() {
+        return channel != null && !replaying;
+    }
+
+    synchronized void createAdmin(String name) {
+        if (!isRecording())
+            return;
+        begin(CREATE_ADMIN);
+        writeString(name);
+        end();
+    }
+
+    synchronized void createDT(String name) {
+        if (!isRecording())
+            return;
+        begin(CREATE_DT);
+        writeString(name);
+        end();
+    }
+
+    /**
+     * Registra un torneo nuevo junto con los equipos y jugadores que ya traiga*/
+    synchronized void addTournament(Administrator admin, PhysicalTournament t) {
+        if (!isRecording())
+            return;
+        begin(ADD_TOURNAMENT);
+        writeString(admin.getName());
+        writeString(t.getName());
+        writeInt(t.getMaxPlayers());
+        end();
+        for (PhysicalTeam team : t.getTeams())
+            writeTeam(t, team);
+    }
+
+    /**
+     * Registra un equipo nuevo junto con los jugadores que ya traiga*/
+    synchronized void addTeam(PhysicalTournament t, PhysicalTeam team) {
+        if (!isRecording())
+            return;
+        writeTeam(t, team);
+    }
+
+    synchronized void addPlayer(PhysicalTournament t, PhysicalTeam team, PhysicalPlayer p) {
+        if (!isRecording())
+            return;
+        writePlayer(t, team, p);
+    }
+
+    synchronized void addDT(Administrator admin, String tournament, DT dt) {
+        if (!isRecording())
+            return;
+        begin(ADD_DT);
+        writeString(admin.getName());
+        writeString(tournament);
+        writeString(dt.getName());
+        end();
+    }
+
+    synchronized void signUp(DT dt, PhysicalTournament t) {
+        if (!isRecording())
+            return;
+        begin(SIGN_UP);
+        writeString(dt.getName());
+        writeString(t.getName());
+        end();
+    }
+
+    void buy(DT dt, PhysicalTournament t, PhysicalPlayer p) {
+        trade(BUY, dt, t, p);
+    }
+
+    void sell(DT dt, PhysicalTournament t, PhysicalPlayer p) {
+        trade(SELL, dt, t, p);
+    }
+
+    /**
+     * Registra una tanda de ventas y compras como un solo registro, asi se reaplica entera o nada*/
+    synchronized void transfer(DT dt, PhysicalTournament t, Collection<PhysicalPlayer> sells, Collection<PhysicalPlayer> buys) {
+        if (!isRecording())
+            return;
+        begin(TRANSFER);
+        writeString(dt.getName());
+        writeString(t.getName());
+        writeInt(sells.size());
+        for (PhysicalPlayer p : sells)
+            writeString(p.getName());
+        writeInt(buys.size());
+        for (PhysicalPlayer p : buys)
+            writeString(p.getName());
+        end();
+    }
+
+    synchronized void refresh(Administrator admin, Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> dataTournaments) {
+        if (!isRecording())
+            return;
+        begin(REFRESH);
+        writeString(admin.getName());
+        writeInt(dataTournaments.size());
+        for (Map.Entry<String, Map<String, Map<String, PhysicalPlayer.Properties>>> tour : dataTournaments.entrySet()) {
+            writeString(tour.getKey());
+            writeInt(tour.getValue().size());
+            for (Map.Entry<String, Map<String, PhysicalPlayer.Properties>> team : tour.getValue().entrySet()) {
+                writeString(team.getKey());
+                writeInt(team.getValue().size());
+                for (Map.Entry<String, PhysicalPlayer.Properties> player : team.getValue().entrySet()) {
+                    writeString(player.getKey());
+                    writeProperties(player.getValue());
+                }
+            }
+        }
+        end();
+    }
+
+    synchronized void refreshPoints(DT dt, PhysicalTournament t, Map<String, PhysicalPlayer.Properties> propertiesMap) {
+        if (!isRecording())
+            return;
+        begin(REFRESH_POINTS);
+        writeString(dt.getName());
+        writeString(t.getName());
+        writeInt(propertiesMap.size());
+        for (Map.Entry<String, PhysicalPlayer.Properties> player : propertiesMap.entrySet()) {
+            writeString(player.getKey());
+            writeProperties(player.getValue());
+        }
+        end();
+    }
+
+    private synchronized void trade(byte type, DT dt, PhysicalTournament t, PhysicalPlayer p) {
+        if (!isRecording())
+            return;
+        begin(type);
+        writeString(dt.getName());
+        writeString(t.getName());
+        writeString(p.getName());
+        end();
+    }
+
+    private void writeTeam(PhysicalTournament t, PhysicalTeam team) {
+        begin(ADD_TEAM);
+        writeString(t.getName());
+        writeString(team.getName());
+        end();
+        for (PhysicalPlayer p : team.getPhysicalPlayers())
+            writePlayer(t, team, p);
+    }
+
+    private void writePlayer(PhysicalTournament t, PhysicalTeam team, PhysicalPlayer p) {
+        begin(ADD_PLAYER);
+        writeString(t.getName());
+        writeString(team.getName());
+        writeString(p.getName());
+        writeInt(p.getPrice());
+        writeProperties(p.getProperties());
+        end();
+    }
+
+    private void writeProperties(PhysicalPlayer.Properties p) {
+        for (int i = 0; i < PROPERTIES; i++)
+            writeInt(p.getProperty(i));
+    }
+
+    /*
+     * Formato de cada registro: largo, crc32 y contenido (numero de registro, tipo y campos).
+     * Los registros se arman en memoria y se escriben enteros, asi un registro a medias solo
+     * puede quedar al final del archivo.
+     */
+
+    private void begin(byte type) {
+        buffer.reset();
+        try {
+            record.writeLong(++sequence);
+            record.writeByte(type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeString(String s) {
+        try {
+            record.writeUTF(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInt(int i) {
+        try {
+            record.writeInt(i);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Escribe el registro armado desde begin. Aca no se toma la foto: otra operacion puede estar a
+     * medias en otro hilo, asi que la toma el hilo que escribe entre dos tandas, ver
+     * GameStore.checkpointIfDue.*/
+    private void end() {
+        crc.reset();
+        crc.update(buffer.array(), 0, buffer.size());
+        try {
+            out.writeInt(buffer.size());
+            out.writeInt((int) crc.getValue());
+            out.write(buffer.array(), 0, buffer.size());
+            pending++;
+            if (++unsynced >= SYNC_EVERY)
+                sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return la cantidad de registros desde la ultima foto*/
+    synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Reaplica los registros validos posteriores a la foto. Si uno no se puede aplicar la
+     * recuperacion falla ahi, en vez de seguir con cuentas que no coinciden con el journal.
+     * @return la posicion donde termina el ultimo registro valido*/
+    private long replay(FileChannel channel, long snapshotSequence) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        long valid = 0;
+        byte[] data = new byte[256];
+        replaying = true;
+        try {
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > channel.size())
+                        break;
+                    if (data.length < length)
+                        data = new byte[length];
+                    in.readFully(data, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(data, 0, length);
+                if ((int) crc.getValue() != checksum)
+                    break;
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+                long recordSequence = fields.readLong();
+                if (recordSequence > snapshotSequence) {
+                    try {
+                        apply(fields.readByte(), fields);
+                    } catch (IOException | RuntimeException | InsufficientFundsException | CompleteTeamException | ExistentNameException e) {
+                        // los registros que siguen dependen de este, no se puede seguir
+                        throw new IOException("No se pudo aplicar el registro " + recordSequence + " del journal", e);
+                    }
+                }
+                sequence = Math.max(sequence, recordSequence);
+                valid += 8 + length;
+                pending++;
+            }
+        } finally {
+            replaying = false;
+        }
+        return valid;
+    }
+
+    private void apply(byte type, DataInputStream in) throws IOException, InsufficientFundsException, CompleteTeamException, ExistentNameException {
+        switch (type) {
+            case CREATE_ADMIN:
+                store.createAdmin(in.readUTF());
+                break;
+            case CREATE_DT:
+                store.createDT(in.readUTF());
+                break;
+            case ADD_TOURNAMENT: {
+                Administrator admin = (Administrator) store.getAccount(in.readUTF());
+                admin.addTournament(new PhysicalTournament(in.readUTF(), in.readInt()));
+                break;
+            }
+            case ADD_TEAM: {
+                PhysicalTournament t = findTournament(in.readUTF());
+                t.addTeam(new PhysicalTeam(in.readUTF(), t.getMaxPlayers()));
+                break;
+            }
+            case ADD_PLAYER: {
+                PhysicalTeam team = findTournament(in.readUTF()).getTeam(in.readUTF());
+                String name = in.readUTF();
+                int price = in.readInt();
+                team.addPlayer(new PhysicalPlayer(name, price, readProperties(in)));
+                break;
+            }
+            case ADD_DT: {
+                Administrator admin = (Administrator) store.getAccount(in.readUTF());
+                String tournament = in.readUTF();
+                admin.addDT(tournament, (DT) store.getAccount(in.readUTF()));
+                break;
+            }
+            case SIGN_UP: {
+                DT dt = (DT) store.getAccount(in.readUTF());
+                dt.signUp(findTournament(in.readUTF()));
+                break;
+            }
+            case BUY:
+            case SELL: {
+                DT dt = (DT) store.getAccount(in.readUTF());
+                PhysicalTournament t = findTournament(in.readUTF());
+                PhysicalPlayer p = findPlayer(t, in.readUTF());
+                if (type == SELL)
+                    dt.sell(t, p);
+                else
+                    dt.buy(t, p);
+                break;
+            }
+            case TRANSFER: {
+                DT dt = (DT) store.getAccount(in.readUTF());
+                PhysicalTournament t = findTournament(in.readUTF());
+                List<PhysicalPlayer> sells = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--)
+                    sells.add(findPlayer(t, in.readUTF()));
+                List<PhysicalPlayer> buys = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--)
+                    buys.add(findPlayer(t, in.readUTF()));
+                dt.transfer(t, sells, buys);
+                break;
+            }
+            case REFRESH: {
+                Administrator admin = (Administrator) store.getAccount(in.readUTF());
+                Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    Map<String, Map<String, PhysicalPlayer.Properties>> tour = new HashMap<>();
+                    data.put(in.readUTF(), tour);
+                    for (int j = in.readInt(); j > 0; j--) {
+                        Map<String, PhysicalPlayer.Properties> team = new HashMap<>();
+                        tour.put(in.readUTF(), team);
+                        for (int k = in.readInt(); k > 0; k--)
+                            team.put(in.readUTF(), readProperties(in));
+                    }
+                }
+                admin.refresh(data);
+                break;
+            }
+            case REFRESH_POINTS: {
+                DT dt = (DT) store.getAccount(in.readUTF());
+                PhysicalTournament t = findTournament(in.readUTF());
+                Map<String, PhysicalPlayer.Properties> players = new HashMap<>();
+                for (int i = in.readInt(); i > 0; i--)
+                    players.put(in.readUTF(), readProperties(in));
+                dt.refreshPoints(t, players);
+                break;
+            }
+            default:
+                throw new IOException("Registro desconocido en el journal: " + type);
+        }
+    }
+
+    private static PhysicalPlayer.Properties readProperties(DataInputStream in) throws IOException {
+        PhysicalPlayer.Properties p = new PhysicalPlayer.Properties();
+        for (int i = 0; i < PROPERTIES; i++)
+            p.setProperty(i, in.readInt());
+        return p;
+    }
+
+    private PhysicalTournament findTournament(String name) throws IOException {
+        PhysicalTournament t = store.findTournament(name);
+        if (t == null)
+            throw new IOException("No existe el torneo " + name);
+        return t;
+    }
+
+    private static PhysicalPlayer findPlayer(PhysicalTournament t, String name) throws IOException {
+        for (PhysicalTeam team : t.getTeams()) {
+            for (PhysicalPlayer p : team.getPhysicalPlayers()) {
+                if (p.getName().equals(name))
+                    return p;
+            }
+        }
+        throw new IOException("No existe el jugador " + name);
+    }
+
+    /**
+     * Buffer que expone su arreglo para no copiarlo en cada registro*/
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package back.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Foto de las cuentas escrita por SnapshotWriter, mapeada en memoria: el indice y un archivo
+ * por administrador, que se mapean en paralelo.
+ * Al abrirla solo se leen los encabezados: los usuarios y torneos se arman recien cuando se
+ * piden, usando los directorios para ir directo a su seccion. Un administrador se arma sin sus
+ * torneos, un torneo sin sus equipos y sus DTs, y cada parte se carga la primera vez que se usa.
+ * Lo que ya se armó se devuelve siempre como la misma instancia.
+ */
+final class MappedSnapshot {
+
+    private static final int PROPERTIES = PhysicalPlayer.Properties.PropValues.values().length;
+
+    private final ByteBuffer data;
+    /** Archivo de cada administrador, por indice de usuario */
+    private final ByteBuffer[] shards;
+    private final long sequence;
+    private final int generation;
+    private final int shardTable;
+    private final int stringOffsets;
+    private final int userDirectory;
+    private final int userOrder;
+    private final int tournamentDirectory;
+    private final int tournamentOrder;
+
+    private final String[] strings;
+    private final User[] users;
+    private final PhysicalTournament[] tournaments;
+    private final Map<Object, Integer> indexes = new IdentityHashMap<>();
+    private Map<String, Integer> stringIndex;
+    private Map<String, Integer> tournamentIndex;
+
+    private MappedSnapshot(File file, ByteBuffer data) throws IOException {
+        this.data = data;
+        for (int i = 0; i < SnapshotWriter.MAGIC.length; i++) {
+            if (data.get(i) != SnapshotWriter.MAGIC[i])
+                throw new IOException("El archivo no es una foto de Mini Gran DT");
+        }
+        int version = data.getInt(4);
+        if (version != SnapshotWriter.VERSION)
+            throw new IOException("Version de archivo no soportada: " + version);
+        sequence = data.getLong(8);
+        strings = new String[data.getInt(16)];
+        users = new User[data.getInt(20)];
+        tournaments = new PhysicalTournament[data.getInt(24)];
+        stringOffsets = data.getInt(28);
+        userDirectory = data.getInt(32);
+        userOrder = data.getInt(36);
+        tournamentDirectory = data.getInt(40);
+        tournamentOrder = data.getInt(44);
+        generation = data.getInt(48);
+        shardTable = data.getInt(52);
+        if (tournamentOrder + 4L * tournaments.length > data.limit() || shardTable + 4L * users.length > data.limit())
+            throw new IOException("Archivo de cuentas corrupto");
+        shards = new ByteBuffer[users.length];
+        try {
+            IntStream.range(0, users.length).parallel()
+                    .filter(i -> getShardGeneration(i) > 0)
+                    .forEach(i -> shards[i] = mapShard(file, i));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ByteBuffer mapShard(File file, int owner) {
+        int shardGeneration = getShardGeneration(owner);
+        File shard = getShardFile(file, owner, shardGeneration);
+        try {
+            ByteBuffer buffer = map(shard);
+            for (int i = 0; i < SnapshotWriter.SHARD_MAGIC.length; i++) {
+                if (buffer.get(i) != SnapshotWriter.SHARD_MAGIC[i])
+                    throw new IOException("El archivo " + shard + " no es parte de la foto");
+            }
+            if (buffer.getInt(4) != owner || buffer.getInt(8) != shardGeneration)
+                throw new IOException("El archivo " + shard + " es de otra foto");
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param file el indice de la foto
+     * @param owner el indice del administrador
+     * @param generation la foto en la que se escribió el archivo del administrador
+     * @return el archivo con las secciones del administrador*/
+    static File getShardFile(File file, int owner, int generation) {
+        return new File(file.getPath() + "." + owner + "-" + generation);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @param data los primeros bytes de un archivo
+     * @return true si los bytes empiezan como una foto de este formato*/
+    static boolean accepts(byte[] data) {
+        if (data.length < SnapshotWriter.MAGIC.length)
+            return false;
+        for (int i = 0; i < SnapshotWriter.MAGIC.length; i++) {
+            if (data[i] != SnapshotWriter.MAGIC[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mapea el indice y los archivos de los administradores en memoria, estos ultimos en paralelo
+     * en el pool de fork-join. El mapeo sigue valido aunque los archivos despues se reemplacen.
+     * @param file el indice de la foto
+     * @return la foto, sin nada armado todavia*/
+    static MappedSnapshot open(File file) throws IOException {
+        return new MappedSnapshot(file, map(file));
+    }
+
+    /**
+     * @return ultimo registro del journal contenido en la foto*/
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return el numero de esta foto, cada foto escrita a partir de otra tiene el siguiente*/
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return la foto en la que se escribió el archivo del administrador, 0 si es un DT*/
+    int getShardGeneration(int i) {
+        return data.getInt(shardTable + 4 * i);
+    }
+
+    int getStringCount() {
+        return strings.length;
+    }
+
+    int getUserCount() {
+        return users.length;
+    }
+
+    int getTournamentCount() {
+        return tournaments.length;
+    }
+
+    String getString(int i) {
+        String s = strings[i];
+        if (s == null) {
+            Cursor c = new Cursor(data, getStringOffset(i));
+            int length = c.varint();
+            byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++)
+                bytes[j] = data.get(c.position + j);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[i] = s;
+        }
+        return s;
+    }
+
+    /**
+     * @return la posicion del string dentro del archivo*/
+    int getStringOffset(int i) {
+        return data.getInt(stringOffsets + 4 * i);
+    }
+
+    /**
+     * @return todos los strings tal cual están en el archivo, uno atras de otro*/
+    ByteBuffer getStringData() {
+        int start = getStringOffset(0);
+        return slice(data, start, stringOffsets - start);
+    }
+
+    /**
+     * Indice de todos los strings de la foto, se arma la primera vez que se pide
+     * @return el indice de cada string*/
+    Map<String, Integer> getStringIndex() {
+        if (stringIndex == null) {
+            Map<String, Integer> index = new HashMap<>(strings.length * 2);
+            for (int i = 0; i < strings.length; i++)
+                index.putIfAbsent(getString(i), i);
+            stringIndex = index;
+        }
+        return stringIndex;
+    }
+
+    /**
+     * Indice de los torneos por nombre, se arma la primera vez que se pide
+     * @return el indice de cada torneo, el primero si hay dos con el mismo nombre*/
+    Map<String, Integer> getTournamentIndex() {
+        if (tournamentIndex == null) {
+            Map<String, Integer> index = new HashMap<>(tournaments.length * 2);
+            for (int i = 0; i < tournaments.length; i++)
+                index.putIfAbsent(getTournamentName(i), i);
+            tournamentIndex = index;
+        }
+        return tournamentIndex;
+    }
+
+    private int userEntry(int i) {
+        return userDirectory + SnapshotWriter.USER_ENTRY * i;
+    }
+
+    private int tournamentEntry(int i) {
+        return tournamentDirectory + SnapshotWriter.TOURNAMENT_ENTRY * i;
+    }
+
+    boolean isAdmin(int i) {
+        return data.get(userEntry(i)) == SnapshotWriter.ADMIN;
+    }
+
+    String getUserName(int i) {
+        return getString(data.getInt(userEntry(i) + 1));
+    }
+
+    String getTournamentName(int i) {
+        return getString(data.getInt(tournamentEntry(i)));
+    }
+
+    int getTournamentOwner(int i) {
+        return data.getInt(tournamentEntry(i) + 4);
+    }
+
+    /**
+     * @return la posicion de los DTs del torneo, relativa al comienzo de su seccion*/
+    int getRosterOffset(int i) {
+        return data.getInt(tournamentEntry(i) + 16);
+    }
+
+    /**
+     * @return el archivo donde está la seccion del usuario: el del administrador o el indice*/
+    private ByteBuffer getUserBuffer(int i) {
+        return isAdmin(i) ? shards[i] : data;
+    }
+
+    int getUserOffset(int i) {
+        return data.getInt(userEntry(i) + 5);
+    }
+
+    int getUserLength(int i) {
+        return data.getInt(userEntry(i) + 9);
+    }
+
+    int getTournamentOffset(int i) {
+        return data.getInt(tournamentEntry(i) + 8);
+    }
+
+    int getTournamentLength(int i) {
+        return data.getInt(tournamentEntry(i) + 12);
+    }
+
+    ByteBuffer getUserSection(int i) {
+        return slice(getUserBuffer(i), getUserOffset(i), getUserLength(i));
+    }
+
+    ByteBuffer getTournamentSection(int i) {
+        return slice(shards[getTournamentOwner(i)], getTournamentOffset(i), getTournamentLength(i));
+    }
+
+    ByteBuffer getRoster(int i) {
+        int rosterOffset = getRosterOffset(i);
+        return slice(shards[getTournamentOwner(i)], getTournamentOffset(i) + rosterOffset, getTournamentLength(i) - rosterOffset);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer section = buffer.duplicate();
+        section.limit(offset + length).position(offset);
+        return section;
+    }
+
+    /**
+     * Busca por nombre con una busqueda binaria sobre el orden guardado
+     * @return el indice, -1 si no está*/
+    private int find(int order, int count, boolean users, String name) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int index = data.getInt(order + 4 * middle);
+            int cmp = (users ? getUserName(index) : getTournamentName(index)).compareTo(name);
+            if (cmp < 0)
+                low = middle + 1;
+            else if (cmp > 0)
+                high = middle - 1;
+            else
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * @return el indice del usuario, -1 si no está en la foto*/
+    int findUser(String name) {
+        return find(userOrder, users.length, true, name);
+    }
+
+    /**
+     * @return el indice del torneo, -1 si no está en la foto*/
+    int findTournament(String name) {
+        return find(tournamentOrder, tournaments.length, false, name);
+    }
+
+    /**
+     * @param o un usuario o torneo
+     * @return su indice si salió de esta foto, null si no*/
+    Integer indexOf(Object o) {
+        return indexes.get(o);
+    }
+
+    /**
+     * @return el usuario si ya se armó, null si no*/
+    User getLoadedUser(int i) {
+        return users[i];
+    }
+
+    /**
+     * Arma el usuario si todavia no se armó. Un administrador queda sin sus torneos,
+     * un DT con sus equipos completos.*/
+    User getUser(int i) {
+        User u = users[i];
+        if (u != null)
+            return u;
+        String name = getUserName(i);
+        Cursor c = new Cursor(getUserBuffer(i), getUserOffset(i));
+        if (isAdmin(i)) {
+            Administrator admin = new Administrator(name);
+            register(users, i, admin);
+            Map<String, Integer> pending = new HashMap<>();
+            for (int j = c.varint(); j > 0; j--) {
+                int tournament = c.varint();
+                pending.put(getTournamentName(tournament), tournament);
+            }
+            admin.setSource(this, pending);
+            return admin;
+        }
+        DT dt = new DT(name);
+        register(users, i, dt);
+        for (int j = c.varint(); j > 0; j--) {
+            PhysicalTournament t = getTournament(c.varint());
+            dt.getExpenses().setFunds(t, c.zigzag());
+            DTTeam team = new DTTeam(t.getMaxPlayers());
+            team.setUserPoints(c.zigzag());
+            for (int k = c.varint(); k > 0; k--) {
+                int ref = c.varint();
+                team.restorePlayer(ref == 0 ? readPlayer(c) : t.getTeamAt(ref - 1).getPhysicalPlayers().get(c.varint()));
+            }
+            dt.getDTTeamsManager().restoreTeam(t, team);
+        }
+        return dt;
+    }
+
+    /**
+     * Arma el torneo si todavia no se armó, sin sus equipos*/
+    PhysicalTournament getTournament(int i) {
+        PhysicalTournament t = tournaments[i];
+        if (t != null)
+            return t;
+        Cursor c = new Cursor(shards[getTournamentOwner(i)], getTournamentOffset(i));
+        t = new PhysicalTournament(getTournamentName(i), c.varint());
+        register(tournaments, i, t);
+        t.setId(i);
+        t.setSource(this, i);
+        t.setAdministrator((Administrator) getUser(getTournamentOwner(i)));
+        return t;
+    }
+
+    /**
+     * Carga los equipos y jugadores de un torneo armado por getTournament*/
+    void loadTeams(PhysicalTournament t, int i) {
+        Cursor c = new Cursor(shards[getTournamentOwner(i)], getTournamentOffset(i));
+        c.varint();
+        for (int j = c.varint(); j > 0; j--) {
+            PhysicalTeam team = new PhysicalTeam(getString(c.varint()), t.getMaxPlayers());
+            for (int k = c.varint(); k > 0; k--)
+                team.restorePlayer(readPlayer(c));
+            t.restoreTeam(team);
+        }
+        t.attach(t.getAdministrator());
+    }
+
+    /**
+     * @return los DTs inscriptos en el torneo, armandolos si hace falta*/
+    ArrayList<DT> loadRoster(int i) {
+        Cursor c = new Cursor(shards[getTournamentOwner(i)], getTournamentOffset(i) + getRosterOffset(i));
+        int count = c.varint();
+        ArrayList<DT> roster = new ArrayList<>(count);
+        for (int j = 0; j < count; j++)
+            roster.add((DT) getUser(c.varint()));
+        return roster;
+    }
+
+    private <T> void register(T[] loaded, int i, T o) {
+        loaded[i] = o;
+        indexes.put(o, i);
+    }
+
+    private PhysicalPlayer readPlayer(Cursor c) {
+        String name = getString(c.varint());
+        int price = c.zigzag();
+        PhysicalPlayer.Properties properties = new PhysicalPlayer.Properties();
+        for (int i = 0; i < PROPERTIES; i++)
+            properties.setProperty(i, c.zigzag());
+        return new PhysicalPlayer(name, price, properties);
+    }
+
+    /**
+     * Posicion de lectura dentro de la foto. Cada lectura usa la suya porque armar
+     * un usuario puede necesitar armar otros en el medio*/
+    private static final class Cursor {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Cursor(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+        }
+
+        int zigzag() {
+            int value = varint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
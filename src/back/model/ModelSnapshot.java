@@ -0,0 +1,108 @@
+package back.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Foto de solo lectura del estado de los DTs (fondos, puntos y jugadores de cada torneo), que
+ * CommandLoop publica despues de cada tanda de cambios. Una foto publicada no cambia nunca, asi que
+ * se puede leer desde cualquier hilo sin candados. Cada tanda arma una foto nueva que comparte con la
+ * anterior los DTs que no cambiaron: solo se copian los caminos hasta los DTs de la tanda, asi que
+ * publicar cuesta lo que cambió y no lo que tiene toda la foto.
+ */
+public final class ModelSnapshot {
+
+    static final ModelSnapshot EMPTY = new ModelSnapshot(0, NameTrie.<TournamentMap<Entry>>empty());
+
+    private final long sequence;
+    /** El estado de cada DT, por nombre, y dentro de cada DT por torneo */
+    private final NameTrie<TournamentMap<Entry>> dts;
+
+    private ModelSnapshot(long sequence, NameTrie<TournamentMap<Entry>> dts) {
+        this.sequence = sequence;
+        this.dts = dts;
+    }
+
+    /**
+     * @return el numero de la tanda que dejó esta foto, aumenta con cada tanda*/
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return true si la foto tiene el estado del DT*/
+    boolean contains(DT dt) {
+        return dts.containsKey(dt.getName());
+    }
+
+    /**
+     * @param dt el DT
+     * @param t el torneo
+     * @return true si el DT estaba inscripto en el torneo*/
+    public boolean hasSigned(DT dt, PhysicalTournament t) {
+        return get(dt, t) != null;
+    }
+
+    /**
+     * @param dt el DT
+     * @param t el torneo
+     * @return los fondos del DT en el torneo, 0 si no está inscripto*/
+    public int getFunds(DT dt, PhysicalTournament t) {
+        Entry e = get(dt, t);
+        return e == null ? 0 : e.funds;
+    }
+
+    /**
+     * @param dt el DT
+     * @param t el torneo
+     * @return los puntos del DT en el torneo, 0 si no está inscripto*/
+    public int getPoints(DT dt, PhysicalTournament t) {
+        Entry e = get(dt, t);
+        return e == null ? 0 : e.points;
+    }
+
+    /**
+     * @param dt el DT
+     * @param t el torneo
+     * @return los jugadores del equipo del DT en el torneo, de solo lectura, vacia si no está inscripto*/
+    public List<PhysicalPlayer> getPlayers(DT dt, PhysicalTournament t) {
+        Entry e = get(dt, t);
+        return e == null ? Collections.<PhysicalPlayer>emptyList() : e.players;
+    }
+
+    private Entry get(DT dt, PhysicalTournament t) {
+        TournamentMap<Entry> tournaments = dts.get(dt.getName());
+        return tournaments == null ? null : tournaments.get(t);
+    }
+
+    /**
+     * Arma la foto siguiente con el estado actual de algunos DTs, se llama desde el hilo que escribe
+     * @param changed los DTs que pudieron cambiar
+     * @return la foto nueva*/
+    ModelSnapshot next(Iterable<DT> changed) {
+        NameTrie<TournamentMap<Entry>> map = dts;
+        for (DT dt : changed) {
+            TournamentMap<Entry> tournaments = new TournamentMap<>();
+            DTTeamsManager manager = dt.getDTTeamsManager();
+            for (PhysicalTournament t : manager.getTournaments())
+                tournaments.put(t, new Entry(dt.getExpenses().getAvailableFunds(t), manager.getUserPoints(t), manager.getUserTeamPlayers(t)));
+            map = map.with(dt.getName(), tournaments);
+        }
+        return new ModelSnapshot(sequence + 1, map);
+    }
+
+    /**
+     * El estado de un DT en un torneo*/
+    private static final class Entry {
+        final int funds;
+        final int points;
+        /** La lista de solo lectura del equipo, que no cambia aunque el equipo cambie despues */
+        final List<PhysicalPlayer> players;
+
+        Entry(int funds, int points, List<PhysicalPlayer> players) {
+            this.funds = funds;
+            this.points = points;
+            this.players = players;
+        }
+    }
+}
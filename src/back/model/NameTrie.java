@@ -0,0 +1,155 @@
+package back.model;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de solo lectura cuyas claves son nombres. Agregar una clave no cambia el mapa: arma uno nuevo
+ * que comparte con el anterior todo menos el camino hasta la clave, asi que cuesta lo mismo con
+ * pocas claves que con muchas. Es un arbol de 32 hijos por nodo que se recorre de a 5 bits del hash
+ * del nombre; cada nodo guarda solo los hijos que tiene, y los nombres con el mismo hash comparten
+ * una hoja. No se pueden sacar claves.
+ */
+final class NameTrie<V> {
+
+    private static final NameTrie<Object> EMPTY = new NameTrie<>(new Node(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private NameTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> NameTrie<V> empty() {
+        return (NameTrie<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(String key) {
+        return find(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        Leaf leaf = find(key);
+        return leaf == null ? null : (V) leaf.values[leaf.indexOf(key)];
+    }
+
+    /**
+     * @return la hoja del nombre si lo tiene, null si no*/
+    private Leaf find(String key) {
+        int hash = hash(key);
+        Node node = root;
+        for (int shift = 0; ; shift += 5) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((node.bitmap & bit) == 0)
+                return null;
+            Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.hash == hash && leaf.indexOf(key) >= 0 ? leaf : null;
+            }
+            node = (Node) child;
+        }
+    }
+
+    /**
+     * @param key el nombre
+     * @param value el valor
+     * @return un mapa con el valor en la clave, que comparte el resto con este*/
+    NameTrie<V> with(String key, V value) {
+        int added = containsKey(key) ? 0 : 1;
+        return new NameTrie<>(put(root, 0, hash(key), key, value), size + added);
+    }
+
+    private static Node put(Node node, int shift, int hash, String key, Object value) {
+        int bit = 1 << ((hash >>> shift) & 31);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] children = new Object[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            children[index] = new Leaf(hash, new String[]{key}, new Object[]{value});
+            System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+            return new Node(node.bitmap | bit, children);
+        }
+        Object child = node.children[index];
+        Object replaced;
+        if (child instanceof Node) {
+            replaced = put((Node) child, shift + 5, hash, key, value);
+        } else {
+            Leaf leaf = (Leaf) child;
+            if (leaf.hash == hash)
+                replaced = leaf.with(key, value);
+            else
+                replaced = put(split(leaf, shift + 5), shift + 5, hash, key, value);
+        }
+        Object[] children = node.children.clone();
+        children[index] = replaced;
+        return new Node(node.bitmap, children);
+    }
+
+    /**
+     * @return un nodo que tiene solo la hoja, para seguir bajando con otra que tiene otro hash*/
+    private static Node split(Leaf leaf, int shift) {
+        return new Node(1 << ((leaf.hash >>> shift) & 31), new Object[]{leaf});
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Nodo interno: el bit i de bitmap dice si tiene el hijo i, y los hijos que tiene están en orden*/
+    private static final class Node {
+        final int bitmap;
+        /** Cada hijo es un Node o una Leaf */
+        final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+    }
+
+    /**
+     * Los nombres que tienen el mismo hash, con sus valores*/
+    private static final class Leaf {
+        final int hash;
+        final String[] keys;
+        final Object[] values;
+
+        Leaf(int hash, String[] keys, Object[] values) {
+            this.hash = hash;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        int indexOf(String key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key))
+                    return i;
+            }
+            return -1;
+        }
+
+        Leaf with(String key, Object value) {
+            int i = indexOf(key);
+            if (i >= 0) {
+                Object[] values = this.values.clone();
+                values[i] = value;
+                return new Leaf(hash, keys, values);
+            }
+            String[] keys = Arrays.copyOf(this.keys, this.keys.length + 1);
+            Object[] values = Arrays.copyOf(this.values, this.values.length + 1);
+            keys[this.keys.length] = key;
+            values[this.keys.length] = value;
+            return new Leaf(hash, keys, values);
+        }
+    }
+}
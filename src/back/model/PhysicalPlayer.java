@@ -3,20 +3,30 @@ package back.model;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * Modela el Jugador de futbol de la vida real, el torneo real, con equipos reales
  * es administrador por el administrador
- * Estos juagadores están en un UNICO torneo a la vez*/
+ * Estos juagadores están en un UNICO torneo a la vez. Mientras están en un torneo su precio y sus
+ * propiedades se guardan en la tabla de estadisticas del torneo y el jugador es una vista sobre ella,
+ * sin propiedades propias*/
 public class PhysicalPlayer implements Serializable{
 
-    private final static int MIN_PRICE = 1000;
+    final static int MIN_PRICE = 1000;
     private static final long serialVersionUID = 1L;
 
     private String name;
     private int price;
+    /** Las propiedades, mientras no esté en ningun torneo */
     private Properties properties;
+    /** La tabla del torneo en el que está, o null si no está en ninguno */
+    private transient PlayerStats stats;
+    private transient int id;
+    /** Veces que cambió el precio mientras no estaba en ningun torneo */
+    private transient int priceChanges;
 
     public PhysicalPlayer(String name, int price, Properties properties) {
         this.name = name;
@@ -42,31 +52,98 @@ public class PhysicalPlayer implements Serializable{
     }
     /**
      * @return el precio del jugador en el torneo*/
-    public int getPrice() { return price; }
+    public int getPrice() { return stats != null ? stats.getPrice(id) : price; }
     /**
-     * @return las propiedades*/
-    public Properties getProperties() { return properties; }
+     * @return las propiedades. Si el jugador está en un torneo es una vista de solo lectura sobre su
+     * fila de la tabla, que sigue al jugador si cambia de torneo*/
+    public Properties getProperties() { return stats != null ? new Properties(this) : properties; }
+    /**
+     * @param index el indice de la propiedad
+     * @return su valor, sin armar una vista de las propiedades*/
+    int getProperty(int index) {
+        return stats != null ? stats.get(id, index) : properties.getProperty(index);
+    }
     /**
      * @return el los puntos que tiene este juagador en el toreno fisico
-     * este puntaje se calcula con un peso ponderado*/
+     * este puntaje se calcula con un peso ponderado y se mantiene al dia cuando cambian las propiedades*/
     public int getPoints() {
-        return properties.calculateRanking();
+        return stats != null ? stats.getPoints(id) : properties.calculateRanking();
+    }
+    /**
+     * @return un numero que aumenta cada vez que cambian las propiedades o el precio del jugador,
+     * para saber si algo calculado a partir de ellos quedó viejo*/
+    public int getVersion() {
+        return stats != null ? stats.getVersion(id) : properties.getVersion() + priceChanges;
     }
     /**
      * Se ocupa de hacer un update en las propiedades de juagador
      * Estas se cambian cuando el adminsitrador del toreno hace un cambio
      * @param p las nuevas propiedades a ser SUMADAS*/
-    public void refresh(Properties p) {
-        properties.refresh(p);
-        price = properties.calculatePrice();
+    void refresh(Properties p) {
+        if (stats != null)
+            stats.refresh(id, p);
+        else
+            properties.refresh(p);
+        refreshPrice();
+    }
+    /**
+     * Igual que refresh, pero si el jugador está en un torneo solo pisa sus propiedades: los puntos
+     * y el precio se recalculan para todos juntos con rescore de la tabla
+     * @param p las nuevas propiedades*/
+    void load(Properties p) {
+        if (stats != null)
+            stats.load(id, p);
+        else
+            refresh(p);
     }
 
     /**
-     * Metodo para el simulador.
-     * Carga el precio del jugador
+     * Recalcula el precio del jugador a partir de sus propiedades
      * */
-    public void refreshPrice(){
-        this.price = properties.calculatePrice();
+    private void refreshPrice(){
+        int newPrice = stats != null ? stats.calculatePrice(id) : properties.calculatePrice();
+        if (stats != null) {
+            stats.setPrice(id, newPrice);
+        } else if (price != newPrice) {
+            price = newPrice;
+            priceChanges++;
+        }
+    }
+
+    /**
+     * Pasa el precio y las propiedades del jugador a la tabla de un torneo. Si ya estaba en otra
+     * tabla libera su fila
+     * @param stats la tabla del torneo*/
+    void attach(PlayerStats stats) {
+        if (this.stats == stats)
+            return;
+        int newId = stats.add(getProperties(), getPrice(), getVersion() + 1);
+        if (this.stats != null)
+            this.stats.remove(id);
+        this.stats = stats;
+        this.id = newId;
+        properties = null;
+    }
+    /**
+     * @return true si el jugador está en esa fila de la tabla*/
+    boolean isAt(PlayerStats stats, int id) {
+        return this.stats == stats && this.id == id;
+    }
+    /**
+     * @return el numero del jugador en la tabla de su torneo*/
+    int getStatsId() {
+        return id;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Properties own = properties;
+        price = getPrice();
+        properties = getProperties();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            properties = own;
+        }
     }
 
     @Override
@@ -89,103 +166,120 @@ public class PhysicalPlayer implements Serializable{
         return name;
     }
 
-    private void writeObject(ObjectOutputStream out) throws IOException{
-        out.defaultWriteObject();
-        out.writeUTF(name);
-        out.writeInt(price);
-        out.writeObject(properties);
-    }
-
-    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException{
-        ois.defaultReadObject();
-        name = ois.readUTF();
-        price = ois.readInt();
-        properties = (Properties) ois.readObject();
-    }
-
-    /**Modela las propiedades del jugador, estos son acumulados a lo largo del torneo.*/
+    /**Modela las propiedades del jugador, estos son acumulados a lo largo del torneo.
+     * Se guardan en un arreglo, en el orden de PropValues.*/
     public static class Properties implements Serializable {
 
-        private int normal_goals_scored;
-        private int goals_scored_by_penalty_kick;
-        private int penalty_catched;
-        private int goals_scored_goalkeeper;
-        private int yellow_cards;
-        private int red_cards;
-        private int goals_against;
+        private static final long serialVersionUID = -1481967523484838619L;
+        /** Cantidad de propiedades */
+        public static final int COUNT = 7;
+        /** Puntos de cada propiedad, en el orden de PropValues */
+        private static final int[] RANKING_VALUES = new int[COUNT];
+        /** Porcentaje del precio de cada propiedad, en el orden de PropValues */
+        private static final double[] PRICE_VALUES = new double[COUNT];
+        static {
+            for (PropValues v : PropValues.values()) {
+                RANKING_VALUES[v.ordinal()] = v.getRankingValue();
+                PRICE_VALUES[v.ordinal()] = v.getPricePerCentValue();
+            }
+        }
+        /** Se serializa con los campos de antes, para poder leer los archivos viejos */
+        private static final ObjectStreamField[] serialPersistentFields = {
+                new ObjectStreamField("normal_goals_scored", int.class),
+                new ObjectStreamField("goals_scored_by_penalty_kick", int.class),
+                new ObjectStreamField("penalty_catched", int.class),
+                new ObjectStreamField("goals_scored_goalkeeper", int.class),
+                new ObjectStreamField("yellow_cards", int.class),
+                new ObjectStreamField("red_cards", int.class),
+                new ObjectStreamField("goals_against", int.class)
+        };
+
+        /** Los valores, si las propiedades no son una vista de la tabla de un torneo */
+        private transient int[] values;
+        /** El jugador, si son una vista sobre su fila de la tabla de su torneo */
+        private transient PhysicalPlayer owner;
+        /** Los puntos y la version, si las propiedades no son una vista de la tabla de un torneo */
+        private transient int ranking;
+        private transient int version;
 
         public Properties() {
-            this.normal_goals_scored = 0;
-            this.goals_scored_by_penalty_kick = 0;
-            this.penalty_catched = 0;
-            this.goals_scored_goalkeeper = 0;
-            this.yellow_cards = 0;
-            this.red_cards = 0;
-            this.goals_against = 0;
+            values = new int[COUNT];
+        }
+
+        Properties(PhysicalPlayer owner) {
+            this.owner = owner;
         }
 
         public Properties(int normal_goals_scored, int goals_scored_by_penalty_kick, int penalty_catched, int goals_scored_goalkeeper, int yellow_cards, int red_cards, int goals_against) {
-            this.normal_goals_scored = normal_goals_scored;
-            this.goals_scored_by_penalty_kick = goals_scored_by_penalty_kick;
-            this.penalty_catched = penalty_catched;
-            this.goals_scored_goalkeeper = goals_scored_goalkeeper;
-            this.yellow_cards = yellow_cards;
-            this.red_cards = red_cards;
-            this.goals_against = goals_against;
+            this();
+            values[0] = normal_goals_scored;
+            values[1] = goals_scored_by_penalty_kick;
+            values[2] = penalty_catched;
+            values[3] = goals_scored_goalkeeper;
+            values[4] = yellow_cards;
+            values[5] = red_cards;
+            values[6] = goals_against;
+            ranking = rank(values);
         }
         /**
          * @return un entero con el puntaje de cada juagor. Este es lineal*/
         public int getPoints() {
-            return normal_goals_scored+goals_scored_by_penalty_kick+penalty_catched+goals_scored_goalkeeper-yellow_cards-red_cards-goals_against;
+            return get(0)+get(1)+get(2)+get(3)-get(4)-get(5)-get(6);
         }
-        /**Se setea cada propiedad por separado
+        /**Se setea cada propiedad por separado. Las de un jugador que está en un torneo no se pueden
+         * cambiar asi, cambian con el refresh del administrador
          * @param index el indice de la propiedad
          * @param property el valor de la misma*/
         public void setProperty(int index, int property) {
-            switch (index) {
-                case 0: normal_goals_scored = property;
-                        break;
-                case 1: goals_scored_by_penalty_kick = property;
-                        break;
-                case 2: penalty_catched = property;
-                        break;
-                case 3: goals_scored_goalkeeper = property;
-                        break;
-                case 4: yellow_cards = property;
-                        break;
-                case 5: red_cards = property;
-                        break;
-                case 6: goals_against = property;
-                        break;
+            if (owner != null)
+                throw new UnsupportedOperationException();
+            if (index >= 0 && index < COUNT) {
+                if (values[index] != property) {
+                    ranking += (property - values[index]) * RANKING_VALUES[index];
+                    values[index] = property;
+                    version++;
+                }
             }
         }
         /**
          * @param index el indice de la propiedad a retornar
          * @return entero con el valor de la misma*/
         public int getProperty(int index) {
-            switch (index) {
-                case 0: return normal_goals_scored;
-                case 1: return goals_scored_by_penalty_kick;
-                case 2: return penalty_catched;
-                case 3: return goals_scored_goalkeeper;
-                case 4: return yellow_cards;
-                case 5: return red_cards;
-                case 6: return goals_against;
-            }
-            return 0;
+            return index >= 0 && index < COUNT ? get(index) : 0;
+        }
+
+        private int get(int index) {
+            return owner != null ? owner.stats.get(owner.id, index) : values[index];
+        }
+        /**
+         * @return un numero que aumenta cada vez que cambia alguna propiedad*/
+        int getVersion() {
+            return owner != null ? owner.stats.getVersion(owner.id) : version;
+        }
+        /**
+         * @param index el indice de la propiedad
+         * @return los puntos que da una unidad de esa propiedad*/
+        static int getRankingValue(int index) {
+            return RANKING_VALUES[index];
         }
         /**
-         * Se calcula el ranking del jugador de manera ponderada
+         * @param index el indice de la propiedad
+         * @return la parte del precio que da una unidad de esa propiedad*/
+        static double getPriceValue(int index) {
+            return PRICE_VALUES[index];
+        }
+        /**
+         * Se calcula el ranking del jugador de manera ponderada. Se mantiene al dia cada vez que
+         * cambia una propiedad, asi que no se vuelve a calcular en cada llamada
          * @return entero con el valor*/
         public int calculateRanking() {
-            int resp=0;
-            resp += normal_goals_scored             * PropValues.normal_goals_scored.getRankingValue();
-            resp += goals_scored_by_penalty_kick    * PropValues.goals_scored_by_penalty_kick.getRankingValue();
-            resp += penalty_catched                 * PropValues.penalty_catched.getRankingValue();
-            resp += goals_scored_goalkeeper         * PropValues.goals_scored_goalkeeper.getRankingValue();
-            resp += yellow_cards                    * PropValues.yellow_cards.getRankingValue();
-            resp += red_cards                       * PropValues.red_cards.getRankingValue();
-            resp += goals_against                   * PropValues.goals_against.getRankingValue();
+            return owner != null ? owner.stats.getPoints(owner.id) : ranking;
+        }
+
+        private static int rank(int[] values) {
+            int resp = 0;
+            for (int i = 0; i < COUNT; i++)
+                resp += values[i] * RANKING_VALUES[i];
             return resp;
         }
         /**
@@ -193,36 +287,75 @@ public class PhysicalPlayer implements Serializable{
          * @return entero con el valor*/
         public int calculatePrice() {
             int resp = MIN_PRICE;
-            resp += normal_goals_scored         * 100 * PropValues.normal_goals_scored.getPricePerCentValue();
-            resp += goals_scored_by_penalty_kick* 100 * PropValues.goals_scored_by_penalty_kick.getPricePerCentValue();
-            resp += penalty_catched             * 100 * PropValues.penalty_catched.getPricePerCentValue();
-            resp += goals_scored_goalkeeper     * 100 * PropValues.goals_scored_goalkeeper.getPricePerCentValue();
+            for (int i = 0; i < COUNT; i++)
+                resp += get(i) * 100 * PRICE_VALUES[i];
             return resp;
         }
         /**
          * Se encarga de cambiar los valores que sean necesarios
          * @param p los nuevos valores*/
         void refresh(Properties p) {
-            this.normal_goals_scored            = p.normal_goals_scored;
-            this.goals_scored_by_penalty_kick   = p.goals_scored_by_penalty_kick;
-            this.penalty_catched                = p.penalty_catched;
-            this.goals_scored_goalkeeper        = p.goals_scored_goalkeeper;
-            this.yellow_cards                   = p.yellow_cards;
-            this.red_cards                      = p.red_cards;
-            this.goals_against                  = p.goals_against;
+            if (owner != null) {
+                owner.stats.refresh(owner.id, p);
+            } else {
+                for (int i = 0; i < COUNT; i++)
+                    setProperty(i, p.get(i));
+            }
+        }
+        /**
+         * Calcula el ranking de muchos jugadores a la vez. Recorre una propiedad por vez sobre todos los
+         * jugadores, un ciclo sin saltos que la JVM puede vectorizar
+         * @param columns las propiedades por columnas
+         * @param count la cantidad de jugadores
+         * @param rankings donde se deja el ranking de cada jugador*/
+        public static void calculateRankings(int[][] columns, int count, int[] rankings) {
+            Arrays.fill(rankings, 0, count, 0);
+            for (int i = 0; i < COUNT; i++) {
+                int[] column = columns[i];
+                int weight = RANKING_VALUES[i];
+                for (int p = 0; p < count; p++)
+                    rankings[p] += column[p] * weight;
+            }
+        }
+        /**
+         * Calcula el precio de muchos jugadores a la vez, con el mismo resultado que calculatePrice
+         * @param columns las propiedades por columnas
+         * @param count la cantidad de jugadores
+         * @param prices donde se deja el precio de cada jugador*/
+        public static void calculatePrices(int[][] columns, int count, int[] prices) {
+            Arrays.fill(prices, 0, count, MIN_PRICE);
+            for (int i = 0; i < COUNT; i++) {
+                int[] column = columns[i];
+                double weight = PRICE_VALUES[i];
+                for (int p = 0; p < count; p++)
+                    prices[p] += column[p] * 100 * weight;
+            }
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            ObjectOutputStream.PutField fields = out.putFields();
+            for (int i = 0; i < COUNT; i++)
+                fields.put(serialPersistentFields[i].getName(), get(i));
+            out.writeFields();
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField fields = in.readFields();
+            values = new int[COUNT];
+            for (int i = 0; i < COUNT; i++)
+                values[i] = fields.get(serialPersistentFields[i].getName(), 0);
+            ranking = rank(values);
         }
 
         @Override
         public String toString() {
-            return "Properties{" +
-                    "normal_goals_scored=" + normal_goals_scored +
-                    ", goals_scored_by_penalty_kick=" + goals_scored_by_penalty_kick +
-                    ", penalty_catched=" + penalty_catched +
-                    ", goals_scored_goalkeeper=" + goals_scored_goalkeeper +
-                    ", yellow_cards=" + yellow_cards +
-                    ", red_cards=" + red_cards +
-                    ", goals_against=" + goals_against +
-                    '}';
+            StringBuilder s = new StringBuilder("Properties{");
+            for (int i = 0; i < COUNT; i++) {
+                if (i > 0)
+                    s.append(", ");
+                s.append(serialPersistentFields[i].getName()).append('=').append(get(i));
+            }
+            return s.append('}').toString();
         }
 
         @Override
@@ -231,48 +364,21 @@ public class PhysicalPlayer implements Serializable{
             if (o == null || getClass() != o.getClass()) return false;
 
             Properties that = (Properties) o;
-
-            if (normal_goals_scored != that.normal_goals_scored) return false;
-            if (goals_scored_by_penalty_kick != that.goals_scored_by_penalty_kick) return false;
-            if (penalty_catched != that.penalty_catched) return false;
-            if (goals_scored_goalkeeper != that.goals_scored_goalkeeper) return false;
-            if (yellow_cards != that.yellow_cards) return false;
-            return red_cards == that.red_cards && goals_against == that.goals_against;
+            for (int i = 0; i < COUNT; i++) {
+                if (get(i) != that.get(i))
+                    return false;
+            }
+            return true;
         }
 
         @Override
         public int hashCode() {
-            int result = normal_goals_scored;
-            result = 31 * result + goals_scored_by_penalty_kick;
-            result = 31 * result + penalty_catched;
-            result = 31 * result + goals_scored_goalkeeper;
-            result = 31 * result + yellow_cards;
-            result = 31 * result + red_cards;
-            result = 31 * result + goals_against;
+            int result = get(0);
+            for (int i = 1; i < COUNT; i++)
+                result = 31 * result + get(i);
             return result;
         }
 
-        public void writeObject(ObjectOutputStream out) throws IOException{
-            out.defaultWriteObject();
-            out.writeInt(normal_goals_scored);
-            out.writeInt(goals_scored_by_penalty_kick);
-            out.writeInt(penalty_catched);
-            out.writeInt(goals_scored_goalkeeper);
-            out.writeInt(yellow_cards);
-            out.writeInt(red_cards);
-            out.writeInt(goals_against);
-        }
-
-        public void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException{
-            ois.defaultReadObject();
-            normal_goals_scored          = ois.readInt();
-            goals_scored_by_penalty_kick = ois.readInt();
-            penalty_catched              = ois.readInt();
-            goals_scored_goalkeeper      = ois.readInt();
-            yellow_cards                 = ois.readInt();
-            red_cards                    = ois.readInt();
-            goals_against                = ois.readInt();
-        }
         /**
          * Encargado de contener los valores de cada propiedad*/
         public enum PropValues{
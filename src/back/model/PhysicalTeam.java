@@ -2,12 +2,9 @@ package back.model;
 
 import back.model.exceptions.ExistentNameException;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 /**
  * Modela un equipo fisico  de futbol que existe en un toreno fisico manejado por el administrador*/
@@ -16,22 +13,18 @@ public class PhysicalTeam extends Team implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private String name;
+    private transient PhysicalTournament tournament;
 
     public PhysicalTeam(String name, int maxPlayers) {
         super(maxPlayers);
         this.name = name;
     }
 
+    /**
+     * Copia un equipo, compartiendo la lista de jugadores hasta que alguno de los dos cambie*/
     PhysicalTeam(String name, PhysicalTeam team, int maxPlayers) {
-        this(team.getName(),maxPlayers);
+        super(maxPlayers, team);
         this.name = name;
-        physicalPlayers.addAll(team.getPhysicalPlayers());
-    }
-    /**
-     * @return retorna lso jugadores del equipo
-     * */
-    public ArrayList<PhysicalPlayer> getPhysicalPlayers() {
-        return physicalPlayers;
     }
     /**
      * @return el nombre del equipo
@@ -45,18 +38,44 @@ public class PhysicalTeam extends Team implements Serializable {
      * @param p el nuevo jugador
      * */
     @Override
-    public void addPlayer(PhysicalPlayer p) throws ExistentNameException{
-        if (physicalPlayers.contains(p))
+    void addPlayer(PhysicalPlayer p) throws ExistentNameException{
+        if (hasPlayer(p))
             throw new ExistentNameException();
-        physicalPlayers.add(p);
+        restorePlayer(p);
+        if (tournament != null) {
+            p.attach(tournament.getStats());
+            tournament.playerAdded(this, p);
+            if (tournament.getAdministrator() != null)
+                Journal.current().addPlayer(tournament, this, p);
+        }
+    }
+    /**
+     * Pasa los jugadores a la tabla de estadisticas del torneo
+     * @param tournament el torneo al que pertenece el equipo
+     * */
+    void setTournament(PhysicalTournament tournament) {
+        this.tournament = tournament;
+        PlayerStats stats = tournament.getStats();
+        for (PhysicalPlayer p : getPhysicalPlayers())
+            p.attach(stats);
     }
     /**
-     * Se encarga de pasar la inforacion recivida del admin a los jugadores
+     * Se encarga de pasar la inforacion recivida del admin a los jugadores. Los que están en la tabla
+     * del torneo solo se cargan, el torneo recalcula sus puntos y precios despues
      * @param dataPlayers la informacion nueva
      * */
     void refresh(Map<String, PhysicalPlayer.Properties> dataPlayers) {
-        for (PhysicalPlayer myPhysicalPlayer : physicalPlayers) {
-            myPhysicalPlayer.refresh(dataPlayers.get(myPhysicalPlayer.getName()));
+        List<PhysicalPlayer> physicalPlayers = getPhysicalPlayers();
+        PlayerStats stats = tournament != null ? tournament.getStats() : null;
+        for (int i = 0; i < physicalPlayers.size(); i++) {
+            PhysicalPlayer myPhysicalPlayer = physicalPlayers.get(i);
+            if (stats != null && myPhysicalPlayer.isAt(stats, myPhysicalPlayer.getStatsId())) {
+                myPhysicalPlayer.load(dataPlayers.get(myPhysicalPlayer.getName()));
+            } else {
+                myPhysicalPlayer.refresh(dataPlayers.get(myPhysicalPlayer.getName()));
+                if (tournament != null)
+                    tournament.playerRefreshed(this, i);
+            }
         }
     }
 
@@ -76,19 +95,7 @@ public class PhysicalTeam extends Team implements Serializable {
 
     @Override
     public String toString() {
-        return name+"{"+Arrays.toString(physicalPlayers.toArray())+'}';
-    }
-
-    private void writeObject(ObjectOutputStream out)throws IOException{
-        out.defaultWriteObject();
-        out.writeUTF(name);
-        out.writeObject(physicalPlayers);
-    }
-
-    private void readObject(ObjectInputStream ois) throws IOException,ClassNotFoundException{
-        ois.defaultReadObject();
-        name = ois.readUTF();
-        physicalPlayers = (ArrayList<PhysicalPlayer>)ois.readObject();
+        return name+"{"+Arrays.toString(getPhysicalPlayers().toArray())+'}';
     }
 }
 
@@ -3,6 +3,7 @@ package back.model;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.*;
 
@@ -13,31 +14,63 @@ import java.util.*;
 public class PhysicalTournament implements Serializable {
 
     private static final long serialVersionUID = 1L;
+    /** El numero de un torneo que no se agregó a ningun almacen */
+    static final int NO_ID = -1;
+    /** Se serializa con los campos de antes, para poder leer los archivos viejos */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("teams", ArrayList.class),
+            new ObjectStreamField("administrator", Administrator.class),
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("maxPlayers", int.class)
+    };
 
-    private ArrayList<PhysicalTeam> teams;
+    /** Los equipos, cada cambio arma una lista nueva que comparte lo que pueda con la anterior */
+    private transient FrozenList<PhysicalTeam> teams;
     private Administrator administrator;
     private String name;
     private int maxPlayers;
+    private transient MappedSnapshot source;
+    private transient int sourceIndex;
+    /** Se arma la primera vez que se pide un ranking y despues se mantiene */
+    private transient PlayerRanking ranking;
+    /** Precio, propiedades y puntos de los jugadores de los equipos */
+    private transient PlayerStats stats;
+    /** El numero del torneo en su almacen mas uno, 0 si no tiene */
+    private transient int id;
 
     public PhysicalTournament(String name, int maxPlayers) {
         this.name = name;
         this.maxPlayers = maxPlayers;
-        teams = new ArrayList<>();
+        teams = FrozenList.empty();
     }
 
+    /**
+     * Copia el torneo, compartiendo la lista de equipos hasta que alguno de los dos cambie*/
     PhysicalTournament(PhysicalTournament t) {
         this(t.getName(),t.getMaxPlayers());
-        teams.addAll(t.getTeams());
+        t.load();
+        teams = t.teams;
+        id = t.id;
+    }
+    /**
+     * @return los equipos dentro de este torneo, de solo lectura. La lista no cambia: si se agrega
+     * un equipo se arma otra, asi que mientras no cambie nada se devuelve siempre la misma*/
+    public List<PhysicalTeam> getTeams() {
+        load();
+        return teams;
     }
     /**
-     * @return un array con los equipos dentro de este torneo*/
-    public ArrayList<PhysicalTeam> getTeams() {
-        return new ArrayList<>(teams);
+     * @param i la posicion del equipo en el torneo
+     * @return el equipo*/
+    PhysicalTeam getTeamAt(int i) {
+        load();
+        return teams.get(i);
     }
     /**
      * @param teamName el nombre del equipo qeu se busca
      * @return el equipo buscado*/
     public PhysicalTeam getTeam(String teamName){
+        load();
         for(PhysicalTeam team : teams)
             if(team.getName().equals(teamName))
                 return team;
@@ -48,6 +81,18 @@ public class PhysicalTournament implements Serializable {
     public String getName() {
         return name;
     }
+    /**
+     * @return el numero del torneo, chico y distinto para cada nombre dentro de su almacen, para
+     * usarlo de clave sin calcular el hash del nombre. NO_ID si no se agregó a ningun almacen*/
+    int getId() {
+        return id - 1;
+    }
+    /**
+     * Lo numera el almacen al que se agrega
+     * @param id el numero*/
+    void setId(int id) {
+        this.id = id + 1;
+    }
     /**
      * @return entero con la maxima cantidad de jugadores en este torneo*/
     public int getMaxPlayers() {
@@ -57,57 +102,174 @@ public class PhysicalTournament implements Serializable {
      * Agrega un equipo nuevo al torneo
      * @param t el nuevo equipo
      * */
-    public void addTeam(PhysicalTeam t) {
-        teams.add(new PhysicalTeam(t.getName(), t, maxPlayers));
+    void addTeam(PhysicalTeam t) {
+        load();
+        PhysicalTeam team = new PhysicalTeam(t.getName(), t, maxPlayers);
+        team.setTournament(this);
+        teams = teams.with(team);
+        if (ranking != null)
+            ranking.addTeam(team);
+        if (administrator != null)
+            Journal.current().addTeam(this, team);
     }
     /**
-     * @param t el equipo a buscar
-     * @return true si el contiene al equipo que se busca, false en otro caso*/
-    public boolean hasTeam(PhysicalTeam t) {
-        for(PhysicalTeam team : teams) {
-            if(t.equals(team))
-                return true;
+     * Agrega un equipo ya armado sin copiarlo, se usa al cargar las cuentas guardadas
+     * @param t el equipo
+     * */
+    void restoreTeam(PhysicalTeam t) {
+        teams = teams.with(t);
+    }
+    /**
+     * Deja el torneo para que sus equipos se carguen de la foto la primera vez que se usen
+     * @param source la foto de la que salió el torneo
+     * @param index la posicion del torneo en la foto
+     * */
+    void setSource(MappedSnapshot source, int index) {
+        this.source = source;
+        this.sourceIndex = index;
+    }
+    /**
+     * @return true si los equipos ya están en memoria
+     * */
+    boolean isLoaded() {
+        return source == null;
+    }
+    /**
+     * Carga los equipos de la foto si todavia no se cargaron
+     * */
+    private void load() {
+        if (source != null) {
+            MappedSnapshot snapshot = source;
+            source = null;
+            snapshot.loadTeams(this, sourceIndex);
         }
-        return false;
+    }
+    /**
+     * @param t el equipo a buscar, se busca por nombre sin importar sus jugadores
+     * @return true si el torneo ya tiene un equipo con ese nombre, false en otro caso*/
+    public boolean hasTeam(PhysicalTeam t) {
+        return getTeam(t.getName()) != null;
     }
     /**
      * Se requiere saber quien es quien adminstra este torneo
      * @param administrator de este torneo
      * */
-    public void setAdministrator(Administrator administrator) {
+    void setAdministrator(Administrator administrator) {
+        this.administrator = administrator;
+    }
+    /**
+     * Registra al torneo como parte del administrador, a partir de aca
+     * los equipos y jugadores que se le agreguen quedan registrados en el journal
+     * @param administrator de este torneo
+     * */
+    void attach(Administrator administrator) {
         this.administrator = administrator;
+        load();
+        for (PhysicalTeam team : teams)
+            team.setTournament(this);
     }
     /**
      * Transifiere la inoracion nueva subia por el adminsitrador a los equipos del torneo
      * @param dataTeams informacion ed ada equipo
      * */
     void refresh(Map<String, Map<String, PhysicalPlayer.Properties>> dataTeams) {
+        load();
         for (PhysicalTeam myTeam : teams) {
             if(dataTeams.get(myTeam.getName()) != null)
                 myTeam.refresh(dataTeams.get(myTeam.getName()));
         }
+        PlayerStats stats = getStats();
+        stats.rescore();
+        if (ranking != null) {
+            for (int i = 0; i < stats.getRescoredCount(); i++)
+                ranking.update(stats.getRescored(i));
+        }
     }
     /**
-     * @return Ranking de un determinado jugador fisico.
+     * @return Ranking de un determinado jugador fisico, 0 si no juega en este torneo.
      * @param physicalPlayer Jugador fisico.
      * */
     public int getRanking(PhysicalPlayer physicalPlayer) {
-        Map<PhysicalPlayer,Integer> players = unifyPlayers();
-        return players.get(physicalPlayer);
+        return getPlayerRanking().getRanking(physicalPlayer);
     }
     /**
-     * Se requiere unificar todos los jugadores para ser accedidos
+     * @return todos los jugadores del torneo, del primero al ultimo del ranking
+     * */
+    public Iterable<PhysicalPlayer> getRankedPlayers() {
+        return getPlayerRanking();
+    }
+    /**
+     * Arma el ranking si todavia no se armó
      */
-    private Map<PhysicalPlayer,Integer> unifyPlayers() {
-        ArrayList<PhysicalPlayer> physicalPlayers = new ArrayList<>();
-        for (PhysicalTeam team : teams) {
-            physicalPlayers.addAll(team.getPhysicalPlayers());
-        }
-        Map<PhysicalPlayer,Integer> map = new HashMap<>();
-        physicalPlayers.sort((p1, p2) -> p2.getPoints() - p1.getPoints());
-        for (int i = 0; i< physicalPlayers.size(); i++)
-            map.put(physicalPlayers.get(i),i+1);
-        return map;
+    private PlayerRanking getPlayerRanking() {
+        load();
+        if (ranking == null)
+            ranking = new PlayerRanking(teams, getStats());
+        return ranking;
+    }
+    /**
+     * @return la tabla de estadisticas de los jugadores del torneo
+     * */
+    PlayerStats getStats() {
+        if (stats == null)
+            stats = new PlayerStats();
+        return stats;
+    }
+    /**
+     * @return un numero que aumenta cada vez que cambian las propiedades o el precio de algun jugador
+     * del torneo, para saber si algo calculado a partir de ellos quedó viejo
+     * */
+    public long getVersion() {
+        load();
+        return getStats().getVersion();
+    }
+    /**
+     * Abre el mercado de pases: desde ahora los DTs pueden dejar ordenes de compra y venta, que se
+     * aplican todas juntas al cerrarlo
+     * */
+    void openTransferWindow() {
+        TransferWindow.open(this);
+    }
+    /**
+     * Cierra el mercado de pases y aplica las ordenes que se dejaron, cada una entera o nada
+     * @return las ordenes que no se pudieron aplicar, cada una con el motivo
+     * */
+    List<TransferOrder> closeTransferWindow() {
+        return TransferWindow.close(this);
+    }
+    /**
+     * Avisa que un equipo del torneo sumó un jugador
+     * */
+    void playerAdded(PhysicalTeam team, PhysicalPlayer p) {
+        if (ranking != null)
+            ranking.addPlayer(team, p);
+    }
+    /**
+     * Avisa que cambiaron las propiedades de un jugador
+     * @param position la posicion del jugador en su equipo
+     * */
+    void playerRefreshed(PhysicalTeam team, int position) {
+        if (ranking != null)
+            ranking.update(team, position);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("teams", new ArrayList<>(getTeams()));
+        fields.put("administrator", administrator);
+        fields.put("name", name);
+        fields.put("maxPlayers", maxPlayers);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        ArrayList<PhysicalTeam> saved = (ArrayList<PhysicalTeam>) fields.get("teams", null);
+        teams = saved == null ? FrozenList.<PhysicalTeam>empty() : FrozenList.copyOf(saved);
+        administrator = (Administrator) fields.get("administrator", null);
+        name = (String) fields.get("name", null);
+        maxPlayers = fields.get("maxPlayers", 0);
     }
 
     @Override
@@ -127,23 +289,10 @@ public class PhysicalTournament implements Serializable {
 
     @Override
     public String toString() {
+        load();
         return name +"{"+ Arrays.toString(teams.toArray()) +"}";
     }
 
-    private void writeObject(ObjectOutputStream out) throws IOException{
-        out.defaultWriteObject();
-        out.writeUTF(name);
-        out.writeInt(maxPlayers);
-        out.writeObject(teams);
-    }
-
-    private void readObject(ObjectInputStream ois) throws IOException,ClassNotFoundException{
-        ois.defaultReadObject();
-        name = ois.readUTF();
-        maxPlayers = ois.readInt();
-        teams = (ArrayList<PhysicalTeam>) ois.readObject();
-    }
-
     public Administrator getAdministrator() {
         return administrator;
     }
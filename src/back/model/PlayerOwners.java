@@ -0,0 +1,98 @@
+package back.model;
+
+import java.util.*;
+
+/**
+ * Indice inverso de un torneo: para cada jugador, los DTs inscriptos que lo tienen en su equipo.
+ * Los DTs se guardan por su posicion en la lista de inscriptos, asi al subir estadisticas solo
+ * se tocan los DTs que tienen a algun jugador actualizado, con una busqueda por jugador.
+ * Los equipos de los DTs avisan al indice cuando compran o venden, sin importar con que copia
+ * del torneo se haya hecho la operacion. Como DTs distintos pueden comprar a la vez, los cambios
+ * y las lecturas se hacen sincronizados. Las listas que devuelve get cambian con cada compra, quien
+ * las recorre tiene que tener tomado el indice.
+ */
+final class PlayerOwners {
+
+    private final PhysicalTournament tournament;
+    /** Posiciones en la lista de inscriptos de los DTs que tienen a cada jugador, por nombre */
+    private final Map<String, ArrayList<Integer>> owners = new HashMap<>();
+    /** Posiciones en la lista de inscriptos de cada equipo */
+    private final Map<DTTeam, ArrayList<Integer>> positions = new IdentityHashMap<>();
+    /** Los equipos de los DTs inscriptos, sin repetir, en el orden en que se inscribieron */
+    private final ArrayList<DTTeam> teams = new ArrayList<>();
+    private int size;
+
+    /**
+     * @param tournament el torneo
+     * @param roster los DTs inscriptos, en orden*/
+    PlayerOwners(PhysicalTournament tournament, List<DT> roster) {
+        this.tournament = tournament;
+        for (DT dt : roster)
+            add(dt);
+    }
+
+    /**
+     * Agrega un DT inscripto al final de la lista, con los jugadores que ya tiene*/
+    synchronized void add(DT dt) {
+        int position = size++;
+        DTTeam team = dt.getDTTeamsManager().getTeam(tournament);
+        if (team == null)
+            return;
+        ArrayList<Integer> mine = positions.get(team);
+        if (mine == null) {
+            mine = new ArrayList<>(1);
+            positions.put(team, mine);
+            teams.add(team);
+        }
+        mine.add(position);
+        team.addListener(this);
+        for (PhysicalPlayer p : team.getPhysicalPlayers())
+            owners.computeIfAbsent(p.getName(), k -> new ArrayList<>()).add(position);
+    }
+
+    /**
+     * Registra que un equipo compró un jugador*/
+    synchronized void bought(DTTeam team, PhysicalPlayer p) {
+        ArrayList<Integer> mine = positions.get(team);
+        if (mine != null)
+            owners.computeIfAbsent(p.getName(), k -> new ArrayList<>()).addAll(mine);
+    }
+
+    /**
+     * Registra que un equipo vendió un jugador*/
+    synchronized void sold(DTTeam team, PhysicalPlayer p) {
+        ArrayList<Integer> mine = positions.get(team);
+        ArrayList<Integer> list = owners.get(p.getName());
+        if (mine != null && list != null) {
+            list.removeAll(mine);
+            if (list.isEmpty())
+                owners.remove(p.getName());
+        }
+    }
+
+    /**
+     * @return la cantidad de equipos de DTs inscriptos, sin repetir*/
+    synchronized int getTeamCount() {
+        return teams.size();
+    }
+
+    /**
+     * @param i la posicion del equipo, entre 0 y getTeamCount()
+     * @return el equipo*/
+    synchronized DTTeam getTeam(int i) {
+        return teams.get(i);
+    }
+
+    /**
+     * @return cuantas veces está inscripto el DT del equipo*/
+    synchronized int getCount(DTTeam team) {
+        return positions.get(team).size();
+    }
+
+    /**
+     * @param playerName el nombre del jugador
+     * @return las posiciones de los DTs que lo tienen, o null si no lo tiene nadie*/
+    synchronized List<Integer> get(String playerName) {
+        return owners.get(playerName);
+    }
+}
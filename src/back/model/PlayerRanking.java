@@ -0,0 +1,154 @@
+package back.model;
+
+import java.util.*;
+
+/**
+ * Ranking de los jugadores de un torneo, ordenados de mayor a menor puntaje.
+ * A igual puntaje queda primero el del equipo anterior y, dentro del equipo, el que se agregó antes,
+ * igual que al ordenar todos los jugadores de los equipos uno atras del otro.
+ * El puesto de un jugador, agregar uno o moverlo cuando cambian sus puntos cuestan O(log n).
+ * Los jugadores que están en la tabla de estadisticas del torneo se buscan por su numero en la tabla,
+ * asi despues de un rescore solo se mueven los que cambiaron de puntos.
+ */
+final class PlayerRanking implements Iterable<PhysicalPlayer> {
+
+    private static final class Entry {
+        final PhysicalPlayer player;
+        final int team;
+        final int position;
+        int points;
+        /** La version del jugador cuando se ubicó */
+        int version;
+
+        Entry(PhysicalPlayer player, int team, int position) {
+            this.player = player;
+            this.team = team;
+            this.position = position;
+            this.points = player.getPoints();
+            this.version = player.getVersion();
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        if (a.points != b.points)
+            return a.points > b.points ? -1 : 1;
+        if (a.team != b.team)
+            return a.team < b.team ? -1 : 1;
+        return Integer.compare(a.position, b.position);
+    };
+
+    private final RankTree<Entry> tree = new RankTree<>(ORDER);
+    private final Map<PhysicalTeam, Integer> teamIndexes = new IdentityHashMap<>();
+    private final Map<PhysicalTeam, ArrayList<Entry>> teamEntries = new IdentityHashMap<>();
+    /** Entrada de cada jugador, si hay dos con el mismo nombre vale el ultimo, como antes */
+    private final Map<PhysicalPlayer, Entry> byPlayer = new HashMap<>();
+    private final PlayerStats stats;
+    /** Entrada de cada fila de la tabla de estadisticas */
+    private Entry[] byId = new Entry[0];
+
+    /**
+     * Arma el ranking con los puntos que ya tiene la tabla de estadisticas del torneo
+     * @param teams los equipos del torneo, en orden
+     * @param stats la tabla de estadisticas del torneo*/
+    PlayerRanking(List<PhysicalTeam> teams, PlayerStats stats) {
+        this.stats = stats;
+        for (PhysicalTeam team : teams)
+            addTeam(team);
+    }
+
+    /**
+     * Agrega un equipo nuevo, al final del torneo, con todos sus jugadores*/
+    void addTeam(PhysicalTeam team) {
+        newTeam(team);
+        for (PhysicalPlayer p : team.getPhysicalPlayers())
+            addPlayer(team, p);
+    }
+
+    private void newTeam(PhysicalTeam team) {
+        teamIndexes.put(team, teamIndexes.size());
+        teamEntries.put(team, new ArrayList<>());
+    }
+
+    /**
+     * Agrega un jugador nuevo, al final de su equipo*/
+    void addPlayer(PhysicalTeam team, PhysicalPlayer p) {
+        ArrayList<Entry> entries = teamEntries.get(team);
+        if (entries == null)
+            return;
+        Entry entry = new Entry(p, teamIndexes.get(team), entries.size());
+        entries.add(entry);
+        byPlayer.put(p, entry);
+        tree.add(entry);
+        if (p.isAt(stats, p.getStatsId())) {
+            int id = p.getStatsId();
+            if (id >= byId.length)
+                byId = Arrays.copyOf(byId, Math.max(16, Math.max(id + 1, byId.length * 2)));
+            byId[id] = entry;
+        }
+    }
+
+    /**
+     * Vuelve a ubicar a un jugador si cambiaron sus puntos
+     * @param team su equipo
+     * @param position su posicion en el equipo*/
+    void update(PhysicalTeam team, int position) {
+        ArrayList<Entry> entries = teamEntries.get(team);
+        if (entries == null)
+            return;
+        move(entries.get(position));
+    }
+
+    /**
+     * Vuelve a ubicar al jugador de una fila de la tabla de estadisticas si cambiaron sus puntos
+     * @param id el numero del jugador en la tabla*/
+    void update(int id) {
+        Entry entry = id < byId.length ? byId[id] : null;
+        if (entry != null && entry.player.isAt(stats, id))
+            move(entry);
+    }
+
+    private void move(Entry entry) {
+        int version = entry.player.getVersion();
+        if (version == entry.version)
+            return;
+        entry.version = version;
+        int points = entry.player.getPoints();
+        if (points != entry.points) {
+            tree.remove(entry);
+            entry.points = points;
+            tree.add(entry);
+        }
+    }
+
+    /**
+     * @param p el jugador
+     * @return su puesto, empezando en 1, o 0 si no está en el torneo*/
+    int getRanking(PhysicalPlayer p) {
+        Entry entry = byPlayer.get(p);
+        return entry == null ? 0 : tree.rank(entry);
+    }
+
+    /**
+     * @return la cantidad de jugadores*/
+    int size() {
+        return tree.size();
+    }
+
+    /**
+     * @return los jugadores del primero al ultimo*/
+    @Override
+    public Iterator<PhysicalPlayer> iterator() {
+        Iterator<Entry> entries = tree.iterator();
+        return new Iterator<PhysicalPlayer>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public PhysicalPlayer next() {
+                return entries.next().player;
+            }
+        };
+    }
+}
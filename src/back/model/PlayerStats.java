@@ -0,0 +1,228 @@
+package back.model;
+
+import java.util.Arrays;
+
+/**
+ * Estadisticas de todos los jugadores de un torneo, guardadas por columnas: un arreglo por cada
+ * propiedad, otro con los precios y otro con los puntos, todos indexados por el numero del jugador
+ * en el torneo. Los jugadores y sus propiedades son vistas sobre esta tabla, asi que recorrer los
+ * jugadores de un torneo es recorrer unos pocos arreglos de enteros.
+ * Los puntos se mantienen al dia cada vez que cambia una propiedad, y cada jugador tiene una version
+ * que aumenta cada vez que cambian sus propiedades o su precio.
+ * Para cargar muchos jugadores juntos se usa load, que solo pisa las columnas, y despues rescore, que
+ * recalcula puntos y precios recorriendo las columnas enteras.
+ * Cuando un jugador deja la tabla su fila queda libre y la usa el proximo que se agregue.
+ */
+final class PlayerStats {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int[][] columns = new int[PhysicalPlayer.Properties.COUNT][];
+    private int[] prices;
+    private int[] points;
+    private int[] versions;
+    private int size;
+    /** Aumenta cada vez que cambia algun jugador */
+    private long version;
+    /** Filas que dejaron de usarse */
+    private int[] free = new int[0];
+    private int freeCount;
+    /** Filas cargadas con load que todavia no se recalcularon */
+    private int[] pending = new int[INITIAL_CAPACITY];
+    private int pendingCount;
+    private boolean[] isPending = new boolean[INITIAL_CAPACITY];
+    /** Lo que calcula rescore, se reusa de una vez a la otra */
+    private int[] rankings = new int[0];
+    private int[] newPrices = new int[0];
+    /** Filas a las que les cambiaron los puntos en el ultimo rescore */
+    private int[] rescored = new int[INITIAL_CAPACITY];
+    private int rescoredCount;
+
+    PlayerStats() {
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = new int[INITIAL_CAPACITY];
+        prices = new int[INITIAL_CAPACITY];
+        points = new int[INITIAL_CAPACITY];
+        versions = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Agrega un jugador a la tabla
+     * @param properties sus propiedades
+     * @param price su precio
+     * @param version la version que tenia el jugador
+     * @return el numero que le tocó*/
+    int add(PhysicalPlayer.Properties properties, int price, int version) {
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            if (size == prices.length)
+                grow();
+            id = size++;
+        }
+        for (int i = 0; i < columns.length; i++)
+            columns[i][id] = properties.getProperty(i);
+        prices[id] = price;
+        points[id] = properties.calculateRanking();
+        versions[id] = version;
+        this.version++;
+        return id;
+    }
+
+    private void grow() {
+        int capacity = prices.length * 2;
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = Arrays.copyOf(columns[i], capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        points = Arrays.copyOf(points, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        isPending = Arrays.copyOf(isPending, capacity);
+    }
+
+    /**
+     * Saca a un jugador de la tabla, su fila queda para el proximo que se agregue
+     * @param id el numero del jugador*/
+    void remove(int id) {
+        for (int i = 0; i < columns.length; i++)
+            columns[i][id] = 0;
+        prices[id] = 0;
+        points[id] = 0;
+        isPending[id] = false;
+        version++;
+        if (freeCount == free.length)
+            free = Arrays.copyOf(free, Math.max(INITIAL_CAPACITY, freeCount * 2));
+        free[freeCount++] = id;
+    }
+
+    /**
+     * @return la cantidad de filas, contando las libres*/
+    int size() {
+        return size;
+    }
+
+    int get(int id, int index) {
+        return columns[index][id];
+    }
+
+    void set(int id, int index, int value) {
+        if (columns[index][id] == value)
+            return;
+        changed(id);
+        points[id] += (value - columns[index][id]) * PhysicalPlayer.Properties.getRankingValue(index);
+        columns[index][id] = value;
+    }
+
+    int getPrice(int id) {
+        return prices[id];
+    }
+
+    void setPrice(int id, int price) {
+        if (prices[id] != price) {
+            changed(id);
+            prices[id] = price;
+        }
+    }
+
+    int getPoints(int id) {
+        return points[id];
+    }
+
+    /**
+     * Pisa todas las propiedades de un jugador
+     * @param p los nuevos valores*/
+    void refresh(int id, PhysicalPlayer.Properties p) {
+        for (int i = 0; i < columns.length; i++)
+            set(id, i, p.getProperty(i));
+    }
+
+    /**
+     * Calcula el precio de un jugador con sus propiedades, igual que Properties.calculatePrice
+     * @return el precio*/
+    int calculatePrice(int id) {
+        int resp = PhysicalPlayer.MIN_PRICE;
+        for (int i = 0; i < columns.length; i++)
+            resp += columns[i][id] * 100 * PhysicalPlayer.Properties.getPriceValue(i);
+        return resp;
+    }
+
+    /**
+     * Pisa las propiedades de un jugador sin recalcular nada. Los puntos y el precio quedan viejos
+     * hasta el proximo rescore
+     * @param p los nuevos valores*/
+    void load(int id, PhysicalPlayer.Properties p) {
+        boolean changed = false;
+        for (int i = 0; i < columns.length; i++) {
+            int value = p.getProperty(i);
+            if (columns[i][id] != value) {
+                columns[i][id] = value;
+                changed = true;
+            }
+        }
+        if (changed)
+            changed(id);
+        if (!isPending[id]) {
+            isPending[id] = true;
+            if (pendingCount == pending.length)
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            pending[pendingCount++] = id;
+        }
+    }
+
+    /**
+     * Recalcula los puntos y el precio de los jugadores cargados con load. Se recorren las columnas
+     * enteras con calculateRankings y calculatePrices, y despues se copia el resultado de los que se cargaron.
+     * Los jugadores a los que les cambiaron los puntos quedan en getRescored*/
+    void rescore() {
+        rescoredCount = 0;
+        if (pendingCount == 0)
+            return;
+        if (rankings.length < size) {
+            rankings = new int[prices.length];
+            newPrices = new int[prices.length];
+        }
+        PhysicalPlayer.Properties.calculateRankings(columns, size, rankings);
+        PhysicalPlayer.Properties.calculatePrices(columns, size, newPrices);
+        if (rescored.length < pendingCount)
+            rescored = new int[pending.length];
+        for (int k = 0; k < pendingCount; k++) {
+            int id = pending[k];
+            isPending[id] = false;
+            if (points[id] != rankings[id]) {
+                points[id] = rankings[id];
+                rescored[rescoredCount++] = id;
+            }
+            setPrice(id, newPrices[id]);
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * @return cuantos jugadores cambiaron de puntos en el ultimo rescore*/
+    int getRescoredCount() {
+        return rescoredCount;
+    }
+
+    /**
+     * @return el numero del jugador que cambió de puntos en el lugar index del ultimo rescore*/
+    int getRescored(int index) {
+        return rescored[index];
+    }
+
+    /**
+     * @return la version del jugador*/
+    int getVersion(int id) {
+        return versions[id];
+    }
+
+    /**
+     * @return un numero que aumenta cada vez que cambia algun jugador*/
+    long getVersion() {
+        return version;
+    }
+
+    private void changed(int id) {
+        versions[id]++;
+        version++;
+    }
+}
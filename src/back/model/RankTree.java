@@ -0,0 +1,198 @@
+package back.model;
+
+import java.util.*;
+
+/**
+ * Conjunto ordenado que ademas sabe en que puesto está cada elemento.
+ * Es un treap en el que cada nodo sabe cuantos nodos tiene debajo, asi que agregar, sacar,
+ * el puesto de un elemento y el elemento de un puesto cuestan O(log n).
+ * El orden no puede tener empates entre elementos distintos. Si cambia lo que se usa para
+ * ordenar un elemento hay que sacarlo antes y volver a agregarlo despues: el nodo que se saca se
+ * reusa en el siguiente agregado, asi mover un elemento no reserva memoria.
+ */
+final class RankTree<E> implements Iterable<E> {
+
+    private static final class Node<E> {
+        E item;
+        final int priority;
+        int size = 1;
+        Node<E> left;
+        Node<E> right;
+
+        Node(E item, int priority) {
+            this.item = item;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<? super E> order;
+    private final Random random = new Random();
+    private Node<E> root;
+    /** El ultimo nodo que se sacó, para reusarlo */
+    private Node<E> spare;
+
+    /**
+     * @param order el orden, de primero a ultimo*/
+    RankTree(Comparator<? super E> order) {
+        this.order = order;
+    }
+
+    void add(E e) {
+        Node<E> n = spare;
+        if (n == null) {
+            n = new Node<>(e, random.nextInt());
+        } else {
+            spare = null;
+            n.item = e;
+            n.size = 1;
+            n.left = n.right = null;
+        }
+        root = insert(root, n);
+    }
+
+    void remove(E e) {
+        root = remove(root, e);
+    }
+
+    /**
+     * @param e el elemento
+     * @return su puesto, empezando en 1, o 0 si no está*/
+    int rank(E e) {
+        int rank = 1;
+        Node<E> current = root;
+        while (current != null) {
+            int c = order.compare(e, current.item);
+            if (c == 0)
+                return rank + size(current.left);
+            if (c < 0) {
+                current = current.left;
+            } else {
+                rank += size(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param index la posicion, empezando en 0
+     * @return el elemento en esa posicion*/
+    E get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        Node<E> current = root;
+        while (true) {
+            int left = size(current.left);
+            if (index == left)
+                return current.item;
+            if (index < left) {
+                current = current.left;
+            } else {
+                index -= left + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * @return los elementos del primero al ultimo*/
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final Deque<Node<E>> stack = new ArrayDeque<>();
+            {
+                push(root);
+            }
+
+            private void push(Node<E> n) {
+                for (; n != null; n = n.left)
+                    stack.push(n);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (stack.isEmpty())
+                    throw new NoSuchElementException();
+                Node<E> n = stack.pop();
+                push(n.right);
+                return n.item;
+            }
+        };
+    }
+
+    private static int size(Node<?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static <E> Node<E> fix(Node<E> n) {
+        n.size = size(n.left) + size(n.right) + 1;
+        return n;
+    }
+
+    private Node<E> insert(Node<E> t, Node<E> n) {
+        if (t == null)
+            return n;
+        if (order.compare(n.item, t.item) < 0) {
+            t.left = insert(t.left, n);
+            if (t.left.priority > t.priority)
+                return rotateRight(t);
+        } else {
+            t.right = insert(t.right, n);
+            if (t.right.priority > t.priority)
+                return rotateLeft(t);
+        }
+        return fix(t);
+    }
+
+    private Node<E> remove(Node<E> t, E e) {
+        if (t == null)
+            return null;
+        int c = order.compare(e, t.item);
+        if (c == 0) {
+            spare = t;
+            t.item = null;
+            return merge(t.left, t.right);
+        }
+        if (c < 0)
+            t.left = remove(t.left, e);
+        else
+            t.right = remove(t.right, e);
+        return fix(t);
+    }
+
+    private static <E> Node<E> merge(Node<E> a, Node<E> b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return fix(a);
+        }
+        b.left = merge(a, b.left);
+        return fix(b);
+    }
+
+    private static <E> Node<E> rotateRight(Node<E> t) {
+        Node<E> l = t.left;
+        t.left = l.right;
+        l.right = fix(t);
+        return fix(l);
+    }
+
+    private static <E> Node<E> rotateLeft(Node<E> t) {
+        Node<E> r = t.right;
+        t.right = r.left;
+        r.left = fix(t);
+        return fix(r);
+    }
+}
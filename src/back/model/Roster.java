@@ -0,0 +1,139 @@
+package back.model;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de jugadores que recuerda el orden en que se agregaron.
+ * Los jugadores se guardan en orden en un arreglo, con huecos donde se sacó alguno, y una tabla de
+ * direccionamiento abierto guarda la posicion de cada uno. Agregar, sacar y buscar cuestan O(1) y,
+ * mientras no haga falta agrandar el arreglo, no crean objetos. Los huecos se sacan cuando se llega
+ * al final del arreglo.
+ * Un LinkedHashSet crea un nodo por cada jugador que se agrega: con él cada compra de un DT crea
+ * 40 bytes de basura, lo que mide DTTest.walletAllocationTest.
+ */
+final class Roster {
+
+    private PhysicalPlayer[] players = new PhysicalPlayer[8];
+    /** Posicion en players de cada jugador mas uno, 0 si el lugar está libre */
+    private int[] slots = new int[16];
+    /** Donde se agrega el proximo jugador */
+    private int end;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(PhysicalPlayer p) {
+        return find(p) >= 0;
+    }
+
+    /**
+     * @return true si se agregó, false si ya estaba*/
+    boolean add(PhysicalPlayer p) {
+        if (find(p) >= 0)
+            return false;
+        if (end == players.length)
+            makeRoom();
+        players[end] = p;
+        insert(end);
+        end++;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true si se sacó, false si no estaba*/
+    boolean remove(PhysicalPlayer p) {
+        int i = find(p);
+        if (i < 0)
+            return false;
+        players[slots[i] - 1] = null;
+        size--;
+        // corre hacia atras los que quedaron despues, para no cortar las busquedas
+        int mask = slots.length - 1;
+        int j = i;
+        while (true) {
+            slots[i] = 0;
+            int position;
+            do {
+                j = (j + 1) & mask;
+                position = slots[j];
+                if (position == 0)
+                    return true;
+            } while (inRange(i, home(players[position - 1], mask), j));
+            slots[i] = position;
+            i = j;
+        }
+    }
+
+    /**
+     * @return true si tiene a todos los jugadores del otro conjunto*/
+    boolean containsAll(Roster other) {
+        for (int k = 0; k < other.end; k++) {
+            if (other.players[k] != null && !contains(other.players[k]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return un arreglo nuevo con los jugadores, en orden*/
+    Object[] toArray() {
+        Object[] copy = new Object[size];
+        int i = 0;
+        for (int k = 0; k < end; k++) {
+            if (players[k] != null)
+                copy[i++] = players[k];
+        }
+        return copy;
+    }
+
+    private int find(PhysicalPlayer p) {
+        int mask = slots.length - 1;
+        for (int i = home(p, mask); slots[i] != 0; i = (i + 1) & mask) {
+            if (players[slots[i] - 1].equals(p))
+                return i;
+        }
+        return -1;
+    }
+
+    private void insert(int position) {
+        int mask = slots.length - 1;
+        int i = home(players[position], mask);
+        while (slots[i] != 0)
+            i = (i + 1) & mask;
+        slots[i] = position + 1;
+    }
+
+    /**
+     * Junta los jugadores al principio del arreglo, agrandandolo si está mas de la mitad lleno*/
+    private void makeRoom() {
+        int k = 0;
+        for (int i = 0; i < end; i++) {
+            if (players[i] != null)
+                players[k++] = players[i];
+        }
+        Arrays.fill(players, k, end, null);
+        end = k;
+        if (size * 2 >= players.length) {
+            players = Arrays.copyOf(players, players.length * 2);
+            slots = new int[players.length * 2];
+        } else {
+            Arrays.fill(slots, 0);
+        }
+        for (int i = 0; i < end; i++)
+            insert(i);
+    }
+
+    private static int home(PhysicalPlayer p, int mask) {
+        int h = p.hashCode() * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    /**
+     * @return true si home está entre from (sin incluir) y to, dando la vuelta a la tabla*/
+    private static boolean inRange(int from, int home, int to) {
+        return from <= to ? from < home && home <= to : from < home || home <= to;
+    }
+}
@@ -0,0 +1,59 @@
+package back.model;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Sesion de una cuenta en un GameStore. Cada sesion tiene su cuenta y el torneo que está mirando,
+ * asi varias sesiones del mismo almacen, o de almacenes distintos, pueden andar a la vez.
+ */
+public final class Session {
+
+    private final GameStore store;
+    private final User account;
+    /** El torneo que se está mirando, null si no se eligió ninguno */
+    private volatile PhysicalTournament tournament;
+
+    Session(GameStore store, User account) {
+        this.store = store;
+        this.account = account;
+    }
+
+    /**
+     * @return el almacen de la sesion*/
+    public GameStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return la cuenta que inició la sesion*/
+    public User getAccount() {
+        return account;
+    }
+
+    /**
+     * @return true si la cuenta es de un DT*/
+    public boolean isDT() {
+        return account instanceof DT;
+    }
+
+    /**
+     * @return los torneos de la cuenta si es un administrador, vacio si no*/
+    public Set<PhysicalTournament> getTournaments() {
+        if (account instanceof Administrator)
+            return ((Administrator) account).getTournaments();
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return el torneo que se está mirando, null si no se eligió ninguno*/
+    public PhysicalTournament getTournament() {
+        return tournament;
+    }
+
+    /**
+     * @param tournament el torneo que se pasa a mirar*/
+    public void setTournament(PhysicalTournament tournament) {
+        this.tournament = tournament;
+    }
+}
@@ -0,0 +1,667 @@
+package back.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Escribe la foto completa de las cuentas en el formato binario propio del juego.
+ * <p>
+ * Formato (version 3), pensado para leerse mapeado en memoria con MappedSnapshot.
+ * La foto es un indice y un archivo por administrador, con su seccion y las de sus torneos.
+ * <pre>
+ * indice:         encabezado, secciones de los DTs, strings, directorios
+ * encabezado:     "MGDT" version secuencia strings usuarios torneos
+ *                 posicion de: offsets de strings, directorio de usuarios, orden de usuarios,
+ *                 directorio de torneos, orden de torneos
+ *                 numero de foto, posicion de la tabla de archivos
+ * strings:        (largo, bytes UTF-8)* y un offset fijo por string
+ * directorios:    usuario (tipo, nombre, offset, largo)
+ *                 torneo  (nombre, dueño, offset, largo, offset de los DTs dentro de la seccion)
+ *                 orden   indices ordenados por nombre, para buscar por nombre sin recorrer todo
+ *                 archivos: numero de la foto en la que se escribió cada administrador, 0 si es DT
+ * administrador:  "MGDS" indice del administrador, numero de foto, secciones
+ * </pre>
+ * Los offsets de un administrador y sus torneos son dentro de su archivo.
+ * Las secciones usan varints (zigzag los que pueden ser negativos) y se refieren a strings,
+ * usuarios y torneos por su indice:
+ * <pre>
+ * administrador:  cantidad, (indice de torneo)*
+ * torneo:         maxJugadores, cantidad, (equipo)*, cantidad, (indice de DT)*
+ *                 equipo: nombre, cantidad, (nombre, precio, 7 estadisticas)*
+ * DT:             cantidad, (indice de torneo, fondos, puntos, cantidad, (jugador)*)*
+ *                 jugador: equipo + 1 e indice dentro del equipo, o 0 y el jugador completo
+ * </pre>
+ * Los indices de una foto se mantienen en la siguiente: lo nuevo se agrega al final. Asi las
+ * secciones de lo que nunca se materializó se copian tal cual de la foto anterior, y guardar
+ * cuesta en proporcion a lo que se usó y no al total de la base. El archivo de un administrador
+ * que no se materializó ni siquiera se reescribe: el indice nuevo apunta al mismo.
+ * <p>
+ * La escritura tiene dos pasos. capture toma una vista inmutable de lo que está en memoria: las
+ * listas de equipos y jugadores, que ya no cambian, y el precio y las estadisticas de cada jugador
+ * copiados a arreglos de enteros. Tiene que llamarse desde el hilo que modifica el modelo. toImage
+ * codifica esa vista y arma los archivos copiando el resto de la foto anterior, que no cambia, y
+ * puede correr en cualquier hilo mientras el modelo sigue cambiando.
+ */
+final class SnapshotWriter {
+
+    static final byte[] MAGIC = {'M', 'G', 'D', 'T'};
+    static final byte[] SHARD_MAGIC = {'M', 'G', 'D', 'S'};
+    static final int VERSION = 3;
+    static final int ADMIN = 0;
+    static final int DT = 1;
+
+    static final int HEADER_SIZE = 56;
+    static final int USER_ENTRY = 13;
+    static final int TOURNAMENT_ENTRY = 20;
+
+    private static final int PROPERTIES = PhysicalPlayer.Properties.PropValues.values().length;
+
+    private final MappedSnapshot base;
+    private final long sequence;
+    private final int generation;
+    private final int baseUsers;
+    private final int baseTournaments;
+    private final int baseStrings;
+    private final Map<String, Integer> baseStringIndex;
+    private final Map<String, Integer> baseTournamentIndex;
+
+    /** Secciones codificadas en toImage */
+    private final Output sections = new Output();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final ArrayList<String> stringTable = new ArrayList<>();
+    private final ArrayList<User> users = new ArrayList<>();
+    private final Map<User, Integer> userIndex = new HashMap<>();
+    private final ArrayList<String> newTournamentNames = new ArrayList<>();
+    private final ArrayList<Integer> newTournamentOwners = new ArrayList<>();
+    private final Map<String, Integer> newTournamentIndex = new HashMap<>();
+    /** Los torneos de los administradores cargados, por indice, solo mientras se captura */
+    private Map<Integer, PhysicalTournament> loaded = new HashMap<>();
+    /** Lo capturado de los torneos que hay que reescribir, por indice */
+    private final Map<Integer, TournamentView> tournaments = new HashMap<>();
+    /** Los equipos capturados de cada torneo, por indice */
+    private final Map<Integer, PlayersView[]> teams = new HashMap<>();
+
+    private String[] userNames;
+    private boolean[] userAdmins;
+    /** Los torneos de cada administrador cargado, por indice */
+    private int[][] adminViews;
+    private DTView[] dtViews;
+    private boolean encoded;
+    /** Posicion de cada seccion dentro de sections, -1 si se copia de la foto anterior */
+    private int[] userStarts;
+    private int[] userLengths;
+    private int[] tournamentStarts;
+    private int[] tournamentLengths;
+    private int[] rosterOffsets;
+
+    private SnapshotWriter(MappedSnapshot base, long sequence, int generation) {
+        this.base = base;
+        this.sequence = sequence;
+        this.generation = generation;
+        baseUsers = base == null ? 0 : base.getUserCount();
+        baseTournaments = base == null ? 0 : base.getTournamentCount();
+        baseStrings = base == null ? 0 : base.getStringCount();
+        baseStringIndex = base == null ? Collections.<String, Integer>emptyMap() : base.getStringIndex();
+        baseTournamentIndex = base == null ? Collections.<String, Integer>emptyMap() : base.getTournamentIndex();
+    }
+
+    /**
+     * Captura lo que está en memoria. Despues de esto el modelo se puede seguir modificando
+     * sin que cambie la foto.
+     * @param base la foto de la que se cargaron las cuentas, null si no hay
+     * @param sessionUsers los usuarios creados despues de cargar la foto
+     * @param sequence ultimo registro del journal contenido en la foto
+     * @param generation numero de la foto, mayor al de cualquier foto ya escrita
+     * @return la foto lista para armarse con toImage*/
+    static SnapshotWriter capture(MappedSnapshot base, List<User> sessionUsers, long sequence, int generation) {
+        SnapshotWriter writer = new SnapshotWriter(base, sequence, generation);
+        writer.captureUsers(sessionUsers);
+        return writer;
+    }
+
+    /**
+     * @return la foto de la que se cargaron las cuentas, cuyos archivos siguen mapeados, null si no hay*/
+    MappedSnapshot getBase() {
+        return base;
+    }
+
+    /**
+     * @return ultimo registro del journal contenido en la foto*/
+    long getSequence() {
+        return sequence;
+    }
+
+    private void captureUsers(List<User> sessionUsers) {
+        int userCount = baseUsers + sessionUsers.size();
+        userNames = new String[userCount];
+        userAdmins = new boolean[userCount];
+        adminViews = new int[userCount][];
+        dtViews = new DTView[userCount];
+        for (int i = 0; i < userCount; i++) {
+            User u = i < baseUsers ? base.getLoadedUser(i) : sessionUsers.get(i - baseUsers);
+            users.add(u);
+            if (u != null) {
+                userNames[i] = u.getName();
+                userAdmins[i] = u instanceof Administrator;
+            }
+        }
+        for (int i = 0; i < userCount; i++) {
+            if (users.get(i) instanceof Administrator)
+                numberTournaments((Administrator) users.get(i), i);
+        }
+        for (int i = 0; i < userCount; i++) {
+            User u = users.get(i);
+            if (u instanceof Administrator)
+                adminViews[i] = captureAdministrator((Administrator) u);
+            else if (u != null)
+                dtViews[i] = captureDT((DT) u);
+        }
+        for (Map.Entry<Integer, PhysicalTournament> e : loaded.entrySet()) {
+            int index = e.getKey();
+            PhysicalTournament t = e.getValue();
+            List<DT> roster = ownerRoster(t, index);
+            if (index >= baseTournaments || t.isLoaded() || roster != null)
+                tournaments.put(index, new TournamentView(t, teamsOf(index, t), roster));
+        }
+        loaded = null;
+    }
+
+    private int[] captureAdministrator(Administrator admin) {
+        Collection<Integer> pending = admin.getPendingTournaments();
+        Collection<PhysicalTournament> own = admin.getLoadedTournaments();
+        int[] indexes = new int[pending.size() + own.size()];
+        int k = 0;
+        for (Integer index : pending)
+            indexes[k++] = index;
+        for (PhysicalTournament t : own) {
+            Integer index = base == null ? null : base.indexOf(t);
+            indexes[k++] = index != null ? index : tournamentIndex(t.getName());
+        }
+        return indexes;
+    }
+
+    private DTView captureDT(DT dt) {
+        DTTeamsManager manager = dt.getDTTeamsManager();
+        ArrayList<PhysicalTournament> signed = new ArrayList<>();
+        for (PhysicalTournament t : manager.getTournaments()) {
+            if (tournamentIndex(t.getName()) != null)
+                signed.add(t);
+        }
+        DTView view = new DTView(signed.size());
+        for (int k = 0; k < signed.size(); k++) {
+            PhysicalTournament t = signed.get(k);
+            int index = tournamentIndex(t.getName());
+            DTTeam team = manager.getTeam(t);
+            view.indexes[k] = index;
+            view.funds[k] = dt.getExpenses().getAvailableFunds(t);
+            view.points[k] = team.getUserPoints();
+            view.teams[k] = new PlayersView(null, team.getPhysicalPlayers());
+            view.canonical[k] = teamsOf(index, loaded.containsKey(index) ? loaded.get(index) : t);
+        }
+        return view;
+    }
+
+    /**
+     * @return los equipos capturados del torneo, se capturan una sola vez por torneo*/
+    private PlayersView[] teamsOf(int index, PhysicalTournament t) {
+        PlayersView[] captured = teams.get(index);
+        if (captured == null) {
+            List<PhysicalTeam> list = t.getTeams();
+            captured = new PlayersView[list.size()];
+            for (int i = 0; i < captured.length; i++)
+                captured[i] = new PlayersView(list.get(i).getName(), list.get(i).getPhysicalPlayers());
+            teams.put(index, captured);
+        }
+        return captured;
+    }
+
+    /**
+     * Codifica lo capturado, en cualquier hilo. Se hace una sola vez*/
+    private void encodeSections() {
+        if (encoded)
+            return;
+        encoded = true;
+        int userCount = users.size();
+        for (int i = 0; i < userCount; i++) {
+            User u = users.get(i);
+            if (u != null) {
+                userIndex.put(u, i);
+                intern(u.getName());
+            }
+        }
+        for (String name : newTournamentNames)
+            intern(name);
+
+        userStarts = new int[userCount];
+        userLengths = new int[userCount];
+        for (int i = 0; i < userCount; i++) {
+            if (users.get(i) == null) {
+                userStarts[i] = -1;
+                continue;
+            }
+            userStarts[i] = sections.size;
+            if (adminViews[i] != null)
+                writeAdministrator(adminViews[i]);
+            else
+                writeDT(dtViews[i]);
+            userLengths[i] = sections.size - userStarts[i];
+        }
+
+        int tournamentCount = baseTournaments + newTournamentNames.size();
+        tournamentStarts = new int[tournamentCount];
+        tournamentLengths = new int[tournamentCount];
+        rosterOffsets = new int[tournamentCount];
+        for (int i = 0; i < tournamentCount; i++) {
+            TournamentView t = tournaments.get(i);
+            if (t == null) {
+                tournamentStarts[i] = -1;
+                continue;
+            }
+            tournamentStarts[i] = sections.size;
+            rosterOffsets[i] = writeTournament(t, i) - tournamentStarts[i];
+            tournamentLengths[i] = sections.size - tournamentStarts[i];
+        }
+    }
+
+    /**
+     * Arma los archivos de la foto. No toca el modelo, asi que puede correr en otro hilo.
+     * @return el indice y los archivos de los administradores que hay que escribir*/
+    Image toImage() {
+        encodeSections();
+        int userCount = users.size();
+        int tournamentCount = tournamentStarts.length;
+        int[] userOffsets = new int[userCount];
+        int[] userSizes = new int[userCount];
+        int[] tournamentOffsets = new int[tournamentCount];
+        int[] tournamentSizes = new int[tournamentCount];
+        int[] tournamentRosters = new int[tournamentCount];
+        int[] shardGenerations = new int[userCount];
+        Map<Integer, byte[]> shards = new HashMap<>();
+
+        Output out = new Output();
+        out.size = HEADER_SIZE;
+        for (int i = 0; i < userCount; i++) {
+            if (isAdmin(i))
+                continue;
+            userOffsets[i] = out.size;
+            if (userStarts[i] < 0)
+                out.copy(base.getUserSection(i));
+            else
+                out.writeBytes(sections.buffer, userStarts[i], userLengths[i]);
+            userSizes[i] = out.size - userOffsets[i];
+        }
+
+        List<List<Integer>> owned = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++)
+            owned.add(null);
+        for (int j = 0; j < tournamentCount; j++) {
+            int owner = tournamentOwner(j);
+            if (owned.get(owner) == null)
+                owned.set(owner, new ArrayList<>());
+            owned.get(owner).add(j);
+        }
+        for (int i = 0; i < userCount; i++) {
+            if (!isAdmin(i))
+                continue;
+            List<Integer> own = owned.get(i) == null ? Collections.<Integer>emptyList() : owned.get(i);
+            boolean changed = userStarts[i] >= 0;
+            for (int j : own)
+                changed |= tournamentStarts[j] >= 0;
+            if (!changed) {
+                shardGenerations[i] = base.getShardGeneration(i);
+                userOffsets[i] = base.getUserOffset(i);
+                userSizes[i] = base.getUserLength(i);
+                for (int j : own) {
+                    tournamentOffsets[j] = base.getTournamentOffset(j);
+                    tournamentSizes[j] = base.getTournamentLength(j);
+                    tournamentRosters[j] = base.getRosterOffset(j);
+                }
+                continue;
+            }
+            Output shard = new Output();
+            shard.writeBytes(SHARD_MAGIC, 0, SHARD_MAGIC.length);
+            shard.writeFixed(i);
+            shard.writeFixed(generation);
+            userOffsets[i] = shard.size;
+            if (userStarts[i] < 0)
+                shard.copy(base.getUserSection(i));
+            else
+                shard.writeBytes(sections.buffer, userStarts[i], userLengths[i]);
+            userSizes[i] = shard.size - userOffsets[i];
+            for (int j : own) {
+                tournamentOffsets[j] = shard.size;
+                if (tournamentStarts[j] < 0) {
+                    shard.copy(base.getTournamentSection(j));
+                    tournamentRosters[j] = base.getRosterOffset(j);
+                } else {
+                    shard.writeBytes(sections.buffer, tournamentStarts[j], tournamentLengths[j]);
+                    tournamentRosters[j] = rosterOffsets[j];
+                }
+                tournamentSizes[j] = shard.size - tournamentOffsets[j];
+            }
+            shards.put(i, Arrays.copyOf(shard.buffer, shard.size));
+            shardGenerations[i] = generation;
+        }
+
+        int[] stringOffsets = new int[baseStrings + stringTable.size()];
+        if (baseStrings > 0) {
+            int shift = out.size - base.getStringOffset(0);
+            out.copy(base.getStringData());
+            for (int i = 0; i < baseStrings; i++)
+                stringOffsets[i] = base.getStringOffset(i) + shift;
+        }
+        for (int i = 0; i < stringTable.size(); i++) {
+            stringOffsets[baseStrings + i] = out.size;
+            byte[] bytes = stringTable.get(i).getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(bytes.length);
+            out.writeBytes(bytes, 0, bytes.length);
+        }
+        int stringOffsetsPosition = out.size;
+        for (int offset : stringOffsets)
+            out.writeFixed(offset);
+
+        int userDirectoryPosition = out.size;
+        for (int i = 0; i < userCount; i++) {
+            out.writeByte(isAdmin(i) ? ADMIN : DT);
+            out.writeFixed(nameRef(userName(i)));
+            out.writeFixed(userOffsets[i]);
+            out.writeFixed(userSizes[i]);
+        }
+        int userOrderPosition = writeOrder(out, userCount, this::userName);
+        int tournamentDirectoryPosition = out.size;
+        for (int i = 0; i < tournamentCount; i++) {
+            out.writeFixed(nameRef(tournamentName(i)));
+            out.writeFixed(tournamentOwner(i));
+            out.writeFixed(tournamentOffsets[i]);
+            out.writeFixed(tournamentSizes[i]);
+            out.writeFixed(tournamentRosters[i]);
+        }
+        int tournamentOrderPosition = writeOrder(out, tournamentCount, this::tournamentName);
+        int shardTablePosition = out.size;
+        for (int shardGeneration : shardGenerations)
+            out.writeFixed(shardGeneration);
+
+        ByteBuffer header = ByteBuffer.wrap(out.buffer, 0, HEADER_SIZE);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(sequence);
+        header.putInt(stringOffsets.length);
+        header.putInt(userCount);
+        header.putInt(tournamentCount);
+        header.putInt(stringOffsetsPosition);
+        header.putInt(userDirectoryPosition);
+        header.putInt(userOrderPosition);
+        header.putInt(tournamentDirectoryPosition);
+        header.putInt(tournamentOrderPosition);
+        header.putInt(generation);
+        header.putInt(shardTablePosition);
+        return new Image(Arrays.copyOf(out.buffer, out.size), shards, shardGenerations, generation);
+    }
+
+    private boolean isAdmin(int i) {
+        return userNames[i] == null ? base.isAdmin(i) : userAdmins[i];
+    }
+
+    private String userName(int i) {
+        return userNames[i] == null ? base.getUserName(i) : userNames[i];
+    }
+
+    private String tournamentName(int i) {
+        return i < baseTournaments ? base.getTournamentName(i) : newTournamentNames.get(i - baseTournaments);
+    }
+
+    private int tournamentOwner(int i) {
+        return i < baseTournaments ? base.getTournamentOwner(i) : newTournamentOwners.get(i - baseTournaments);
+    }
+
+    private Integer tournamentIndex(String name) {
+        Integer index = baseTournamentIndex.get(name);
+        return index != null ? index : newTournamentIndex.get(name);
+    }
+
+    /**
+     * Le asigna indice a los torneos nuevos del administrador y recuerda cuales hay que reescribir*/
+    private void numberTournaments(Administrator admin, int owner) {
+        for (PhysicalTournament t : admin.getLoadedTournaments()) {
+            Integer index = base == null ? null : base.indexOf(t);
+            if (index == null) {
+                index = baseTournaments + newTournamentNames.size();
+                newTournamentNames.add(t.getName());
+                newTournamentOwners.add(owner);
+                if (tournamentIndex(t.getName()) == null)
+                    newTournamentIndex.put(t.getName(), index);
+            }
+            loaded.put(index, t);
+        }
+    }
+
+    private void writeAdministrator(int[] indexes) {
+        sections.writeVarint(indexes.length);
+        for (int index : indexes)
+            sections.writeVarint(index);
+    }
+
+    /**
+     * @return la posicion donde empiezan los DTs del torneo*/
+    private int writeTournament(TournamentView t, int index) {
+        sections.writeVarint(t.maxPlayers);
+        sections.writeVarint(t.teams.length);
+        for (PlayersView team : t.teams) {
+            sections.writeVarint(intern(team.name));
+            sections.writeVarint(team.players.size());
+            for (int p = 0; p < team.players.size(); p++)
+                writePlayer(team, p);
+        }
+        int rosterPosition = sections.size;
+        if (t.roster == null) {
+            sections.copy(base.getRoster(index));
+        } else {
+            sections.writeVarint(t.roster.length);
+            for (DT dt : t.roster)
+                sections.writeVarint(userIndex.get(dt));
+        }
+        return rosterPosition;
+    }
+
+    private List<DT> ownerRoster(PhysicalTournament t, int index) {
+        return ((Administrator) users.get(tournamentOwner(index))).getLoadedDTs(t);
+    }
+
+    private void writeDT(DTView dt) {
+        sections.writeVarint(dt.indexes.length);
+        for (int k = 0; k < dt.indexes.length; k++) {
+            PlayersView team = dt.teams[k];
+            sections.writeVarint(dt.indexes[k]);
+            sections.writeZigzag(dt.funds[k]);
+            sections.writeZigzag(dt.points[k]);
+            sections.writeVarint(team.players.size());
+            for (int p = 0; p < team.players.size(); p++)
+                writePlayerReference(dt.canonical[k], team, p);
+        }
+    }
+
+    private void writePlayerReference(PlayersView[] teams, PlayersView own, int index) {
+        PhysicalPlayer p = own.players.get(index);
+        for (int i = 0; i < teams.length; i++) {
+            List<PhysicalPlayer> players = teams[i].players;
+            int position = players.indexOf(p);
+            if (position >= 0 && players.get(position) == p) {
+                sections.writeVarint(i + 1);
+                sections.writeVarint(position);
+                return;
+            }
+        }
+        sections.writeVarint(0);
+        writePlayer(own, index);
+    }
+
+    private void writePlayer(PlayersView team, int index) {
+        sections.writeVarint(intern(team.players.get(index).getName()));
+        int offset = index * (1 + PROPERTIES);
+        for (int i = 0; i <= PROPERTIES; i++)
+            sections.writeZigzag(team.values[offset + i]);
+    }
+
+    /**
+     * Escribe los indices ordenados por nombre
+     * @return la posicion donde empieza el orden*/
+    private int writeOrder(Output out, int count, java.util.function.IntFunction<String> name) {
+        Integer[] order = new Integer[count];
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            names[i] = name.apply(i);
+        }
+        Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+        int position = out.size;
+        for (Integer i : order)
+            out.writeFixed(i);
+        return position;
+    }
+
+    private int intern(String s) {
+        Integer index = baseStringIndex.get(s);
+        if (index != null)
+            return index;
+        index = strings.get(s);
+        if (index == null) {
+            index = baseStrings + stringTable.size();
+            strings.put(s, index);
+            stringTable.add(s);
+        }
+        return index;
+    }
+
+    private int nameRef(String s) {
+        Integer index = baseStringIndex.get(s);
+        return index != null ? index : strings.get(s);
+    }
+
+    /**
+     * Lo que se escribe de un torneo, capturado en el hilo que modifica el modelo*/
+    private static final class TournamentView {
+        final int maxPlayers;
+        final PlayersView[] teams;
+        /** Los DTs inscriptos, null si se copian de la foto anterior */
+        final DT[] roster;
+
+        TournamentView(PhysicalTournament t, PlayersView[] teams, List<DT> roster) {
+            this.maxPlayers = t.getMaxPlayers();
+            this.teams = teams;
+            this.roster = roster == null ? null : roster.toArray(new DT[0]);
+        }
+    }
+
+    /**
+     * Los jugadores de un equipo, con el precio y las estadisticas que tenian al capturarlos*/
+    private static final class PlayersView {
+        final String name;
+        /** La lista del equipo, que no cambia aunque el equipo cambie */
+        final List<PhysicalPlayer> players;
+        /** Precio y estadisticas de cada jugador, uno atras del otro */
+        final int[] values;
+
+        PlayersView(String name, List<PhysicalPlayer> players) {
+            this.name = name;
+            this.players = players;
+            values = new int[players.size() * (1 + PROPERTIES)];
+            int k = 0;
+            for (int p = 0; p < players.size(); p++) {
+                PhysicalPlayer player = players.get(p);
+                values[k++] = player.getPrice();
+                for (int i = 0; i < PROPERTIES; i++)
+                    values[k++] = player.getProperty(i);
+            }
+        }
+    }
+
+    /**
+     * Los torneos en los que está inscripto un DT, con sus fondos, puntos y jugadores*/
+    private static final class DTView {
+        final int[] indexes;
+        final int[] funds;
+        final int[] points;
+        final PlayersView[] teams;
+        /** Los equipos de cada torneo, para escribir los jugadores como referencias */
+        final PlayersView[][] canonical;
+
+        DTView(int count) {
+            indexes = new int[count];
+            funds = new int[count];
+            points = new int[count];
+            teams = new PlayersView[count];
+            canonical = new PlayersView[count][];
+        }
+    }
+
+    /**
+     * Los archivos de una foto ya armada*/
+    static final class Image {
+        /** El indice */
+        final byte[] index;
+        /** Los archivos de los administradores que cambiaron, por indice de usuario */
+        final Map<Integer, byte[]> shards;
+        /** La foto en la que se escribió el archivo de cada administrador, 0 para los DTs */
+        final int[] shardGenerations;
+        final int generation;
+
+        Image(byte[] index, Map<Integer, byte[]> shards, int[] shardGenerations, int generation) {
+            this.index = index;
+            this.shards = shards;
+            this.shardGenerations = shardGenerations;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Arreglo de bytes que crece a medida que se escribe*/
+    private static final class Output {
+        private byte[] buffer = new byte[1 << 16];
+        private int size;
+
+        void writeZigzag(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeFixed(int value) {
+            ensure(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void copy(ByteBuffer section) {
+            int length = section.remaining();
+            ensure(length);
+            section.get(buffer, size, length);
+            size += length;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
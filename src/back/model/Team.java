@@ -5,40 +5,131 @@ import back.model.exceptions.ExistentNameException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Modela un equipo de futbol genérico, puede ser fisico o virtual
+ * Los jugadores se guardan en un Roster, que mantiene el orden en que se agregaron, asi que
+ * agregar, sacar y buscar un jugador cuestan O(1). Para comparar equipos se guarda una huella de
+ * los jugadores que no depende del orden. Los que leen los jugadores reciben una lista que no
+ * cambia, que se arma de nuevo solo despues de un cambio.
  */
 public abstract class Team implements Serializable{
 
+    private static final long serialVersionUID = 5036835633557343217L;
+    /** Se serializa con los campos de antes, para poder leer los archivos viejos */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("max_players", int.class),
+            new ObjectStreamField("physicalPlayers", ArrayList.class)
+    };
+
     int max_players;
-    ArrayList<PhysicalPlayer> physicalPlayers = new ArrayList<>();
+    /** null hasta que se necesita, se arma a partir de physicalPlayers */
+    private transient Roster roster;
+    /** Suma de los hash de los jugadores, vale cuando roster no es null */
+    private transient int fingerprint;
+    /** Los jugadores en una lista de solo lectura, null si cambiaron y todavia no se pidieron */
+    private transient FrozenList<PhysicalPlayer> physicalPlayers = FrozenList.empty();
 
     Team(int max_players) {
         this.max_players = max_players;
     }
+
+    /**
+     * Arma un equipo con los mismos jugadores que otro, compartiendo la lista hasta que alguno cambie*/
+    Team(int max_players, Team team) {
+        this(max_players);
+        physicalPlayers = team.frozen();
+    }
     /**
      * Agrega un jugador al equipo
      * @param p  el nuevo jugador*/
     void addPlayer(PhysicalPlayer p) throws CompleteTeamException, ExistentNameException {
-        if(physicalPlayers.size() == max_players)
+        checkAdd(p);
+        restorePlayer(p);
+    }
+    /**
+     * Controla que se pueda agregar un jugador, sin agregarlo
+     * @param p el jugador*/
+    void checkAdd(PhysicalPlayer p) throws CompleteTeamException, ExistentNameException {
+        if(roster().size() == max_players)
             throw new CompleteTeamException();
-        if (physicalPlayers.contains(p))
+        if (roster.contains(p))
             throw new ExistentNameException();
-        physicalPlayers.add(p);
+    }
+    /**
+     * Agrega un jugador al final del equipo sin controlar nada, se usa al cargar las cuentas guardadas
+     * @param p el jugador*/
+    void restorePlayer(PhysicalPlayer p) {
+        if (roster().add(p)) {
+            fingerprint += p.hashCode();
+            physicalPlayers = null;
+        }
     }
     /**
      * REmueve un jugador del equipo
-     * @param p  el jugador a ser removido*/
-    void removePlayer(PhysicalPlayer p) {
-        physicalPlayers.remove(p);
+     * @param p  el jugador a ser removido
+     * @return true si el jugador estaba en el equipo*/
+    boolean removePlayer(PhysicalPlayer p) {
+        if (!roster().remove(p))
+            return false;
+        fingerprint -= p.hashCode();
+        physicalPlayers = null;
+        return true;
+    }
+    /**
+     * @return la cantidad de jugadores del equipo*/
+    int size() {
+        return roster().size();
+    }
+    /**
+     * @param p el jugador
+     * @return true si el jugador está en el equipo*/
+    public boolean hasPlayer(PhysicalPlayer p) {
+        return roster().contains(p);
     }
     /**
-     * @return un array con los jugadores*/
-    public ArrayList<PhysicalPlayer> getPhysicalPlayers() {
-        return physicalPlayers;
+     * @return los jugadores, en el orden en que se agregaron, de solo lectura. La lista no cambia:
+     * si cambia el equipo se arma otra la proxima vez que se pida, y mientras tanto se devuelve
+     * siempre la misma*/
+    public List<PhysicalPlayer> getPhysicalPlayers() {
+        return frozen();
+    }
+
+    private FrozenList<PhysicalPlayer> frozen() {
+        FrozenList<PhysicalPlayer> players = physicalPlayers;
+        if (players == null)
+            physicalPlayers = players = FrozenList.wrap(roster.toArray());
+        return players;
+    }
+
+    private Roster roster() {
+        if (roster == null) {
+            roster = new Roster();
+            for (PhysicalPlayer p : physicalPlayers) {
+                if (roster.add(p))
+                    fingerprint += p.hashCode();
+            }
+        }
+        return roster;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("max_players", max_players);
+        fields.put("physicalPlayers", new ArrayList<>(getPhysicalPlayers()));
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        max_players = fields.get("max_players", 0);
+        ArrayList<PhysicalPlayer> saved = (ArrayList<PhysicalPlayer>) fields.get("physicalPlayers", null);
+        physicalPlayers = saved == null ? FrozenList.<PhysicalPlayer>empty() : FrozenList.copyOf(saved);
     }
 
     @Override
@@ -48,21 +139,7 @@ public abstract class Team implements Serializable{
         Team aux = (Team) o;
         if(max_players != aux.max_players)
             return false;
-        for(PhysicalPlayer p1 : physicalPlayers) {
-            for(PhysicalPlayer p2: aux.getPhysicalPlayers())
-                if(!p1.equals(p2))
-                    return false;
-        }
-        return true;
-    }
-
-    private void writeObject(ObjectOutputStream out)throws IOException {
-        out.defaultWriteObject();
-        out.writeObject(physicalPlayers);
-    }
-
-    private void readObject(ObjectInputStream ois) throws IOException,ClassNotFoundException{
-        ois.defaultReadObject();
-        physicalPlayers = (ArrayList<PhysicalPlayer>)ois.readObject();
+        return roster().size() == aux.roster().size() && fingerprint == aux.fingerprint
+                && roster.containsAll(aux.roster);
     }
 }
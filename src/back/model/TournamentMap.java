@@ -0,0 +1,169 @@
+package back.model;
+
+import java.util.*;
+
+/**
+ * Mapa cuyas claves son torneos, buscados por su numero en vez de por su nombre.
+ * Es una tabla de direccionamiento abierto sobre los numeros de los torneos: buscar un torneo
+ * no calcula el hash del nombre ni compara nombres. Los torneos que no tienen numero, porque no
+ * se agregaron a ningun almacen, se buscan comparando nombres. Como un HashMap, si se agrega un
+ * torneo que ya estaba (con el mismo nombre) se cambia el valor pero se queda la clave anterior.
+ * Los torneos se recorren en el orden en que se agregaron.
+ */
+final class TournamentMap<V> {
+
+    private static final int FREE = -1;
+
+    /** Numero de torneo de cada lugar de la tabla, FREE si está vacio */
+    private int[] ids;
+    /** Posicion en keys del torneo de cada lugar de la tabla */
+    private int[] entries;
+    private final ArrayList<PhysicalTournament> keys = new ArrayList<>();
+    private final ArrayList<V> values = new ArrayList<>();
+    /** Cantidad de claves sin numero */
+    private int unnumbered;
+    private Set<PhysicalTournament> keySet;
+
+    TournamentMap() {
+        init(4);
+    }
+
+    /**
+     * Copia un mapa leido de un archivo viejo*/
+    TournamentMap(Map<PhysicalTournament, ? extends V> map) {
+        this();
+        for (Map.Entry<PhysicalTournament, ? extends V> e : map.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
+    private void init(int capacity) {
+        ids = new int[capacity];
+        Arrays.fill(ids, FREE);
+        entries = new int[capacity];
+    }
+
+    private int slot(int id) {
+        int mask = ids.length - 1;
+        int i = home(id, mask);
+        while (ids[i] != FREE && ids[i] != id)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * @return la posicion del torneo en keys, o -1 si no está*/
+    private int find(PhysicalTournament t) {
+        int id = t.getId();
+        if (id != PhysicalTournament.NO_ID) {
+            int i = slot(id);
+            if (ids[i] != FREE)
+                return entries[i];
+            if (unnumbered == 0)
+                return -1;
+        }
+        for (int k = 0; k < keys.size(); k++) {
+            if (keys.get(k).getName().equals(t.getName()))
+                return k;
+        }
+        return -1;
+    }
+
+    V get(PhysicalTournament t) {
+        int k = find(t);
+        return k < 0 ? null : values.get(k);
+    }
+
+    boolean containsKey(PhysicalTournament t) {
+        return find(t) >= 0;
+    }
+
+    void put(PhysicalTournament t, V value) {
+        int k = find(t);
+        if (k >= 0) {
+            values.set(k, value);
+            return;
+        }
+        keys.add(t);
+        values.add(value);
+        index(t, keys.size() - 1);
+    }
+
+    private void index(PhysicalTournament t, int k) {
+        int id = t.getId();
+        if (id == PhysicalTournament.NO_ID) {
+            unnumbered++;
+            return;
+        }
+        int i = slot(id);
+        if (ids[i] != FREE)
+            return;
+        if ((k + 1) * 2 > ids.length) {
+            init(ids.length * 2);
+            unnumbered = 0;
+            for (int j = 0; j < k; j++)
+                index(keys.get(j), j);
+            i = slot(id);
+        }
+        ids[i] = id;
+        entries[i] = k;
+    }
+
+    void remove(PhysicalTournament t) {
+        int k = find(t);
+        if (k < 0)
+            return;
+        keys.remove(k);
+        values.remove(k);
+        // las posiciones de los que quedaron despues cambian, se vuelve a armar la tabla
+        Arrays.fill(ids, FREE);
+        unnumbered = 0;
+        for (int j = 0; j < keys.size(); j++)
+            index(keys.get(j), j);
+    }
+
+    /**
+     * @param id el numero de un torneo
+     * @param mask el tamaño de la tabla menos uno, el tamaño es una potencia de 2
+     * @return el lugar de la tabla donde se empieza a buscar el torneo*/
+    static int home(int id, int mask) {
+        int h = id * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return los torneos, de solo lectura*/
+    Set<PhysicalTournament> keySet() {
+        if (keySet == null) {
+            keySet = new AbstractSet<PhysicalTournament>() {
+                @Override
+                public Iterator<PhysicalTournament> iterator() {
+                    return Collections.unmodifiableList(keys).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return keys.size();
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return o instanceof PhysicalTournament && containsKey((PhysicalTournament) o);
+                }
+            };
+        }
+        return keySet;
+    }
+
+    /**
+     * @return una copia como HashMap, para guardarlo con el formato de antes*/
+    HashMap<PhysicalTournament, V> toMap() {
+        HashMap<PhysicalTournament, V> map = new HashMap<>();
+        for (int k = 0; k < keys.size(); k++)
+            map.put(keys.get(k), values.get(k));
+        return map;
+    }
+}
@@ -0,0 +1,60 @@
+package back.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Orden de compra y venta que un DT deja en el mercado de pases de un torneo. Se aplica entera o
+ * nada cuando se cierra el mercado, con los precios de ese momento.
+ */
+public final class TransferOrder {
+
+    private final DT dt;
+    private final long ticket;
+    private final List<PhysicalPlayer> sells;
+    private final List<PhysicalPlayer> buys;
+    /** Lo escribe el hilo que cierra el mercado y lo lee el que mandó la orden */
+    private volatile Exception error;
+
+    TransferOrder(DT dt, long ticket, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) {
+        this.dt = dt;
+        this.ticket = ticket;
+        this.sells = Collections.unmodifiableList(new ArrayList<>(sells));
+        this.buys = Collections.unmodifiableList(new ArrayList<>(buys));
+    }
+
+    /**
+     * @return el DT que mandó la orden*/
+    public DT getDT() {
+        return dt;
+    }
+
+    /**
+     * @return el numero de la orden, en el orden en que llegaron al mercado*/
+    long getTicket() {
+        return ticket;
+    }
+
+    /**
+     * @return los jugadores a vender*/
+    public List<PhysicalPlayer> getSells() {
+        return sells;
+    }
+
+    /**
+     * @return los jugadores a comprar*/
+    public List<PhysicalPlayer> getBuys() {
+        return buys;
+    }
+
+    /**
+     * @return por que no se pudo aplicar la orden, null si se aplicó o todavia no se procesó*/
+    public Exception getError() {
+        return error;
+    }
+
+    void setError(Exception error) {
+        this.error = error;
+    }
+}
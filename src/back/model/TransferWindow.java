@@ -0,0 +1,110 @@
+package back.model;
+
+import back.model.exceptions.ClosedWindowException;
+import back.model.exceptions.CompleteTeamException;
+import back.model.exceptions.ExistentNameException;
+import back.model.exceptions.InsufficientFundsException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mercado de pases de un torneo. Mientras está abierto los DTs dejan ordenes en una cola sin
+ * candados, y al cerrarlo se aplican todas de una pasada, en un orden que no depende de como se
+ * intercalaron los hilos: por DT y, para cada DT, en el orden en que llegaron.
+ * Cada GameStore tiene sus mercados abiertos, que se buscan por nombre de torneo, asi cualquier
+ * copia del torneo encuentra el mismo. Las ordenes pendientes no se guardan: lo que queda
+ * registrado es lo que se aplica al cerrar.
+ */
+final class TransferWindow {
+
+    private static final Comparator<TransferOrder> PRIORITY =
+            Comparator.comparing((TransferOrder o) -> o.getDT().getName()).thenComparingLong(TransferOrder::getTicket);
+
+    private final PhysicalTournament tournament;
+    private final ConcurrentLinkedQueue<TransferOrder> orders = new ConcurrentLinkedQueue<>();
+    private final AtomicLong tickets = new AtomicLong();
+    /** DTs que están dejando una orden en este momento */
+    private final AtomicInteger submitting = new AtomicInteger();
+    private volatile boolean closed;
+
+    private TransferWindow(PhysicalTournament tournament) {
+        this.tournament = tournament;
+    }
+
+    /**
+     * Abre el mercado de un torneo, si no estaba abierto
+     * @param t el torneo*/
+    static void open(PhysicalTournament t) {
+        windows().computeIfAbsent(t.getName(), k -> new TransferWindow(t));
+    }
+
+    /**
+     * Deja una orden en el mercado de un torneo
+     * @param dt el DT
+     * @param t el torneo
+     * @param sells los jugadores a vender
+     * @param buys los jugadores a comprar
+     * @return la orden, que al cerrar el mercado dice si se pudo aplicar*/
+    static TransferOrder submit(DT dt, PhysicalTournament t, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws ClosedWindowException {
+        TransferWindow window = windows().get(t.getName());
+        if (window == null)
+            throw new ClosedWindowException();
+        return window.submit(dt, sells, buys);
+    }
+
+    /**
+     * Cierra el mercado de un torneo y aplica las ordenes
+     * @param t el torneo
+     * @return las ordenes que no se pudieron aplicar, en el orden en que se procesaron*/
+    static List<TransferOrder> close(PhysicalTournament t) {
+        TransferWindow window = windows().remove(t.getName());
+        if (window == null)
+            return Collections.emptyList();
+        return window.close();
+    }
+
+    /**
+     * @return los mercados abiertos del almacen en el que se está trabajando en este hilo*/
+    private static Map<String, TransferWindow> windows() {
+        return GameStore.current().getWindows();
+    }
+
+    private TransferOrder submit(DT dt, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws ClosedWindowException {
+        submitting.incrementAndGet();
+        try {
+            // si se ve abierto, el que cierra espera a que la orden esté en la cola
+            if (closed)
+                throw new ClosedWindowException();
+            TransferOrder order = new TransferOrder(dt, tickets.getAndIncrement(), sells, buys);
+            orders.offer(order);
+            return order;
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    private List<TransferOrder> close() {
+        closed = true;
+        while (submitting.get() > 0)
+            Thread.yield();
+        List<TransferOrder> batch = new ArrayList<>(orders);
+        orders.clear();
+        batch.sort(PRIORITY);
+        List<TransferOrder> rejected = new ArrayList<>();
+        for (TransferOrder order : batch) {
+            try {
+                order.getDT().transfer(tournament, order.getSells(), order.getBuys());
+            } catch (InsufficientFundsException | CompleteTeamException | ExistentNameException e) {
+                order.setError(e);
+                rejected.add(order);
+            }
+        }
+        return rejected;
+    }
+}
@@ -0,0 +1,105 @@
+package back.model;
+
+import back.model.exceptions.CompleteTeamException;
+import back.model.exceptions.ExistentNameException;
+import back.model.exceptions.InsufficientFundsException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mercado de pases: aplica las compras y ventas de los DTs tocando los fondos y el equipo juntos,
+ * asi una operacion que falla no deja plata descontada ni un jugador sin pagar.
+ * Con el ciclo de comandos andando todo pasa por el hilo que escribe, que ya hace las operaciones
+ * de a una, asi que no hacen falta candados por DT o por torneo. El unico candado es para el ciclo
+ * detenido, donde los comandos se ejecutan en el hilo que los pide: ahi las operaciones se hacen
+ * de a una por almacen. Cada GameStore tiene el suyo.
+ */
+final class Transfers {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Compra un jugador: controla el equipo, descuenta los fondos y lo agrega, todo o nada.
+     * @param dt el DT
+     * @param t el torneo
+     * @param p el jugador
+     */
+    void buy(DT dt, PhysicalTournament t, PhysicalPlayer p) throws InsufficientFundsException, CompleteTeamException, ExistentNameException {
+        lock.lock();
+        try {
+            DTTeam team = dt.getDTTeamsManager().getTeam(t);
+            if (team != null)
+                team.checkAdd(p);
+            dt.getExpenses().buy(t, p);
+            dt.getDTTeamsManager().addPlayer(t, p);
+            Journal.current().buy(dt, t, p);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Vende un jugador: solo se acreditan los fondos si el jugador estaba en el equipo.
+     * @param dt el DT
+     * @param t el torneo
+     * @param p el jugador
+     */
+    void sell(DT dt, PhysicalTournament t, PhysicalPlayer p) {
+        lock.lock();
+        try {
+            if (dt.getDTTeamsManager().removePlayer(t, p)) {
+                dt.getExpenses().sell(t, p);
+                Journal.current().sell(dt, t, p);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Aplica una tanda de ventas y compras en un torneo: se controla todo una vez, contra el equipo
+     * y los fondos, y se aplica todo o nada. Primero se vende y despues se compra, asi lo que se
+     * vende paga lo que se compra. Los jugadores a vender que no están en el equipo se ignoran.
+     * @param dt el DT
+     * @param t el torneo
+     * @param sells los jugadores a vender
+     * @param buys los jugadores a comprar
+     */
+    void transfer(DT dt, PhysicalTournament t, List<PhysicalPlayer> sells, List<PhysicalPlayer> buys) throws InsufficientFundsException, CompleteTeamException, ExistentNameException {
+        lock.lock();
+        try {
+            DTTeam team = dt.getDTTeamsManager().getTeam(t);
+            if (team == null) {
+                // igual que buy: sin inscripcion no hay fondos
+                if (!buys.isEmpty())
+                    throw new InsufficientFundsException();
+                return;
+            }
+            Set<PhysicalPlayer> sold = team.checkTransfer(sells, buys);
+            if (sold.isEmpty() && buys.isEmpty())
+                return;
+            dt.getExpenses().transfer(t, sold, buys);
+            dt.getDTTeamsManager().transfer(t, sold, buys);
+            Journal.current().transfer(dt, t, sold, buys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inscribe un DT en un torneo, sin que el DT opere mientras tanto.
+     * @param dt el DT
+     * @param t el torneo
+     */
+    void signUp(DT dt, PhysicalTournament t) {
+        lock.lock();
+        try {
+            dt.getExpenses().addNewFund(t);
+            dt.getDTTeamsManager().addNewTeam(t);
+            Journal.current().signUp(dt, t);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.io.Serializable;
  */
 public abstract class User implements Serializable {
 
+    private static final long serialVersionUID = 301816277022356261L;
+
     String name;
 
     /**
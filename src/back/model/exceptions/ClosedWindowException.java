@@ -0,0 +1,10 @@
+package back.model.exceptions;
+
+/**
+ * Excepción usada cuando se manda una orden de compra o venta a un torneo sin el mercado de pases abierto.
+ */
+public class ClosedWindowException extends Exception {
+    public ClosedWindowException() {
+        super("El mercado de pases esta cerrado.");
+    }
+}
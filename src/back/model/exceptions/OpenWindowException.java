@@ -0,0 +1,10 @@
+package back.model.exceptions;
+
+/**
+ * Excepción usada cuando se intenta comprar o vender en el momento en un torneo con el mercado de pases abierto.
+ */
+public class OpenWindowException extends Exception {
+    public OpenWindowException() {
+        super("El mercado de pases esta abierto, las compras y ventas se hacen con ordenes.");
+    }
+}
@@ -0,0 +1,638 @@
+package back.tests;
+
+import back.model.*;
+import back.model.exceptions.ClosedWindowException;
+import back.model.exceptions.OpenWindowException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AccountsManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().getAbsolutePath();
+        AccountsManager.loadAccounts(directory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        AccountsManager.close();
+        AccountsManager.setCheckpointPolicy(512, 5 * 60 * 1000);
+    }
+
+    private PhysicalTournament populate() throws Exception {
+        AccountsManager.createAdmin("adminName");
+        AccountsManager.createDT("userName");
+        AccountsManager.setUser("adminName");
+        Administrator admin = (Administrator) AccountsManager.getSignedAccount();
+        CommandLoop commands = AccountsManager.getCommands();
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournaments().iterator().next();
+        commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+        PhysicalPlayer player = new PhysicalPlayer("playerName", 3000);
+        commands.addPlayer(tour.getTeam("teamName"), player);
+
+        AccountsManager.setUser("userName");
+        DT dt = (DT) AccountsManager.getSignedAccount();
+        commands.signUp(dt, tour);
+        commands.buy(dt, tour, player);
+        return tour;
+    }
+
+    private void assertPopulated() {
+        assertTrue(AccountsManager.contains("adminName"));
+        AccountsManager.setUser("userName");
+        DT dt = (DT) AccountsManager.getSignedAccount();
+        PhysicalTournament tour = new PhysicalTournament("tourName", 5);
+        assertTrue(dt.hasSigned(tour));
+        assertEquals(17000, dt.getExpenses().getAvailableFunds(tour));
+        assertTrue(dt.getDTTeamsManager().getUserTeamPlayers(tour).contains(new PhysicalPlayer("playerName")));
+        assertTrue(AccountsManager.getDTsInTournament(tour).contains(dt));
+    }
+
+    @Test
+    public void journalReplayTest() throws Exception {
+        populate();
+        AccountsManager.close();
+
+        assertFalse(new File(directory, "accountsData.temp").exists());
+        AccountsManager.loadAccounts(directory);
+        assertPopulated();
+    }
+
+    @Test
+    public void teamReplayTest() throws Exception {
+        CommandLoop commands = AccountsManager.getCommands();
+        commands.createAdmin("adminName");
+        Administrator admin = (Administrator) account("adminName");
+        PhysicalTournament copy = new PhysicalTournament("tourName", 5);
+        PhysicalTeam brought = new PhysicalTeam("teamName1", 5);
+        commands.addPlayer(brought, new PhysicalPlayer("playerName1"));
+        commands.addTeam(copy, brought);
+        commands.addTournament(admin, copy);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName2", 5));
+        commands.addPlayer(tour.getTeam("teamName2"), new PhysicalPlayer("playerName2"));
+        commands.addPlayer(tour.getTeam("teamName2"), new PhysicalPlayer("playerName3"));
+        AccountsManager.close();
+
+        // cada registro se reaplica una sola vez
+        AccountsManager.loadAccounts(directory);
+        tour = ((Administrator) account("adminName")).getTournament("tourName");
+        assertEquals(2, tour.getTeams().size());
+        assertEquals(1, tour.getTeam("teamName1").getPhysicalPlayers().size());
+        assertEquals(2, tour.getTeam("teamName2").getPhysicalPlayers().size());
+    }
+
+    @Test
+    public void transferReplayTest() throws Exception {
+        PhysicalTournament tour = populate();
+        PhysicalPlayer player2 = new PhysicalPlayer("playerName2", 1000);
+        PhysicalPlayer player3 = new PhysicalPlayer("playerName3", 2500);
+        CommandLoop commands = AccountsManager.getCommands();
+        commands.addPlayer(tour.getTeam("teamName"), player2);
+        commands.addPlayer(tour.getTeam("teamName"), player3);
+        DT dt = (DT) AccountsManager.getSignedAccount();
+        commands.transfer(dt, tour, Arrays.asList(new PhysicalPlayer("playerName")), Arrays.asList(player2, player3));
+        AccountsManager.close();
+
+        AccountsManager.loadAccounts(directory);
+        AccountsManager.setUser("userName");
+        dt = (DT) AccountsManager.getSignedAccount();
+        assertEquals(16500, dt.getExpenses().getAvailableFunds(tour));
+        assertEquals(Arrays.asList(player2, player3), dt.getDTTeamsManager().getUserTeamPlayers(tour));
+    }
+
+    @Test
+    public void refreshPointsReplayTest() throws Exception {
+        PhysicalTournament tour = populate();
+        DT dt = (DT) AccountsManager.getSignedAccount();
+        Map<String, PhysicalPlayer.Properties> map = new HashMap<>();
+        map.put("playerName", new PhysicalPlayer.Properties(1, 2, 3, 4, 3, 2, 1));
+        AccountsManager.getCommands().refreshPoints(dt, tour, map);
+        AccountsManager.close();
+
+        AccountsManager.loadAccounts(directory);
+        AccountsManager.setUser("userName");
+        dt = (DT) AccountsManager.getSignedAccount();
+        assertEquals(4, dt.getPoints(tour));
+    }
+
+    @Test
+    public void commandLoopTest() throws Exception {
+        CommandLoop commands = AccountsManager.getCommands();
+        commands.createAdmin("adminName");
+        Administrator admin = (Administrator) account("adminName");
+        assertTrue(commands.createTournament(admin, "tourName", 5));
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+        PhysicalTeam team = tour.getTeam("teamName");
+        for (int i = 0; i < 5; i++)
+            commands.addPlayer(team, new PhysicalPlayer("playerName" + i, 1000));
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            String name = "userName" + i;
+            threads[i] = new Thread(() -> {
+                try {
+                    commands.createDT(name);
+                    DT dt = (DT) account(name);
+                    commands.signUp(dt, tour);
+                    commands.transfer(dt, tour, Collections.<PhysicalPlayer>emptyList(), team.getPhysicalPlayers().subList(0, 3));
+                    commands.sell(dt, tour, team.getPhysicalPlayers().get(0));
+                    // lo que cambió el propio hilo ya está en la foto
+                    assertEquals(18000, commands.read(dt).getFunds(dt, tour));
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(null, failure.get());
+
+        ModelSnapshot snapshot = commands.getSnapshot();
+        DT dt = (DT) account("userName3");
+        assertEquals(team.getPhysicalPlayers().subList(1, 3), snapshot.getPlayers(dt, tour));
+        assertEquals(4, AccountsManager.getDTsInTournament(tour).size());
+        assertEquals(Integer.valueOf(4), commands.read(() -> AccountsManager.getDTsInTournament(tour).size()));
+        // una foto publicada no cambia
+        commands.sell(dt, tour, team.getPhysicalPlayers().get(1));
+        assertEquals(18000, snapshot.getFunds(dt, tour));
+        assertEquals(19000, commands.getSnapshot().getFunds(dt, tour));
+
+        AccountsManager.close();
+        AccountsManager.loadAccounts(directory);
+        dt = (DT) account("userName3");
+        assertEquals(19000, AccountsManager.getCommands().read(dt).getFunds(dt, tour));
+    }
+
+    @Test
+    public void snapshotSharingTest() throws Exception {
+        CommandLoop commands = AccountsManager.getCommands();
+        commands.createAdmin("adminName");
+        Administrator admin = (Administrator) account("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+        PhysicalPlayer player = new PhysicalPlayer("playerName", 1000);
+        commands.addPlayer(tour.getTeam("teamName"), player);
+        // nombres con el mismo hash
+        List<String> names = new ArrayList<>(Arrays.asList("Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB"));
+        for (int i = 0; i < 2000; i++)
+            names.add("userName" + i);
+        List<DT> dts = new ArrayList<>();
+        for (String name : names) {
+            commands.createDT(name);
+            DT dt = (DT) account(name);
+            commands.signUp(dt, tour);
+            dts.add(dt);
+        }
+
+        ModelSnapshot before = commands.getSnapshot();
+        commands.buy(dts.get(1), tour, player);
+        commands.buy(dts.get(1500), tour, player);
+        ModelSnapshot after = commands.getSnapshot();
+        assertTrue(after.getSequence() > before.getSequence());
+        for (int i = 0; i < dts.size(); i++) {
+            DT dt = dts.get(i);
+            boolean bought = i == 1 || i == 1500;
+            assertTrue(before.hasSigned(dt, tour));
+            assertTrue(after.hasSigned(dt, tour));
+            // la foto anterior no ve las compras, la nueva solo las de esos DTs
+            assertEquals(20000, before.getFunds(dt, tour));
+            assertEquals(bought ? 19000 : 20000, after.getFunds(dt, tour));
+            assertEquals(bought ? Collections.singletonList(player) : Collections.<PhysicalPlayer>emptyList(), after.getPlayers(dt, tour));
+        }
+        assertFalse(after.hasSigned(new DT("otherName"), tour));
+        assertFalse(after.hasSigned(dts.get(0), new PhysicalTournament("otherName", 5)));
+    }
+
+    @Test
+    public void transferWindowTest() throws Exception {
+        CommandLoop commands = AccountsManager.getCommands();
+        commands.createAdmin("adminName");
+        Administrator admin = (Administrator) account("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+        PhysicalTeam team = tour.getTeam("teamName");
+        for (int i = 0; i < 2; i++)
+            commands.addPlayer(team, new PhysicalPlayer("playerName" + i, 4000));
+        DT[] dts = new DT[4];
+        for (int i = 0; i < dts.length; i++) {
+            commands.createDT("userName" + i);
+            dts[i] = (DT) account("userName" + i);
+            commands.signUp(dts[i], tour);
+        }
+
+        commands.openTransferWindow(tour);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[dts.length];
+        for (int i = 0; i < threads.length; i++) {
+            DT dt = dts[i];
+            threads[i] = new Thread(() -> {
+                try {
+                    commands.order(dt, tour, Collections.<PhysicalPlayer>emptyList(), team.getPhysicalPlayers());
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(null, failure.get());
+        boolean rejected = false;
+        try {
+            commands.buy(dts[0], tour, team.getPhysicalPlayers().get(0));
+        } catch (OpenWindowException e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+        assertEquals(20000, commands.read(dts[0]).getFunds(dts[0], tour));
+
+        assertTrue(commands.closeTransferWindow(tour).isEmpty());
+        ModelSnapshot snapshot = commands.getSnapshot();
+        for (DT dt : dts) {
+            assertEquals(12000, snapshot.getFunds(dt, tour));
+            assertEquals(team.getPhysicalPlayers(), snapshot.getPlayers(dt, tour));
+        }
+        boolean thrown = false;
+        try {
+            commands.order(dts[0], tour, Collections.<PhysicalPlayer>emptyList(), team.getPhysicalPlayers());
+        } catch (ClosedWindowException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+
+    private static synchronized User account(String name) {
+        AccountsManager.setUser(name);
+        return AccountsManager.getSignedAccount();
+    }
+
+    @Test
+    public void gameStoreTest() throws Exception {
+        String[] directories = {folder.newFolder().getAbsolutePath(), folder.newFolder().getAbsolutePath()};
+        GameStore[] stores = new GameStore[directories.length];
+        for (int i = 0; i < stores.length; i++)
+            stores[i] = GameStore.open(directories[i]);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[stores.length];
+        for (int i = 0; i < threads.length; i++) {
+            GameStore store = stores[i];
+            int price = 1000 * (i + 1);
+            String name = "userName" + i;
+            threads[i] = new Thread(() -> {
+                try {
+                    CommandLoop commands = store.getCommands();
+                    commands.createAdmin("adminName");
+                    commands.createDT(name);
+                    Administrator admin = (Administrator) store.login("adminName").getAccount();
+                    commands.createTournament(admin, "tourName", 5);
+                    PhysicalTournament tour = admin.getTournament("tourName");
+                    commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+                    PhysicalPlayer player = new PhysicalPlayer("playerName", price);
+                    commands.addPlayer(tour.getTeam("teamName"), player);
+                    DT dt = (DT) store.login(name).getAccount();
+                    commands.signUp(dt, tour);
+                    commands.buy(dt, tour, player);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(null, failure.get());
+
+        assertFalse(AccountsManager.contains("adminName"));
+        assertFalse(stores[0].contains("userName1"));
+        assertFalse(stores[1].contains("userName0"));
+        // dos sesiones del mismo almacen miran cada una su torneo
+        Session admin = stores[0].login("adminName");
+        Session dt = stores[0].login("userName0");
+        assertFalse(dt.isDT() == admin.isDT());
+        assertTrue(dt.getTournaments().isEmpty());
+        dt.setTournament(admin.getTournaments().iterator().next());
+        assertEquals(null, admin.getTournament());
+
+        PhysicalTournament tour = new PhysicalTournament("tourName", 5);
+        for (GameStore store : stores)
+            store.close();
+        for (int i = 0; i < directories.length; i++) {
+            GameStore store = GameStore.open(directories[i]);
+            DT user = (DT) store.login("userName" + i).getAccount();
+            assertEquals(20000 - 1000 * (i + 1), user.getExpenses().getAvailableFunds(tour));
+            assertEquals(1, store.getDTsInTournament(tour).size());
+            store.close();
+        }
+    }
+
+    @Test
+    public void compactionTest() throws Exception {
+        populate();
+        AccountsManager.save();
+        AccountsManager.close();
+
+        assertEquals(0, new File(directory, "accountsData.journal").length());
+        AccountsManager.loadAccounts(directory);
+        assertPopulated();
+    }
+
+    @Test
+    public void tornRecordTest() throws Exception {
+        populate();
+        AccountsManager.close();
+
+        try (FileOutputStream out = new FileOutputStream(new File(directory, "accountsData.journal"), true)) {
+            out.write(new byte[]{0, 0, 0, 40, 1, 2, 3});
+        }
+        AccountsManager.loadAccounts(directory);
+        assertPopulated();
+        AccountsManager.createDT("otherName");
+        AccountsManager.close();
+
+        AccountsManager.loadAccounts(directory);
+        assertTrue(AccountsManager.contains("otherName"));
+    }
+
+    @Test
+    public void failedReplayTest() throws Exception {
+        populate();
+        AccountsManager.close();
+
+        // una compra de un jugador que el DT ya tiene no se puede repetir
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(content);
+        record.writeLong(Long.MAX_VALUE / 2);
+        record.writeByte(8);
+        record.writeUTF("userName");
+        record.writeUTF("tourName");
+        record.writeUTF("playerName");
+        CRC32 crc = new CRC32();
+        crc.update(content.toByteArray());
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, "accountsData.journal"), true))) {
+            out.writeInt(content.size());
+            out.writeInt((int) crc.getValue());
+            out.write(content.toByteArray());
+        }
+        boolean thrown = false;
+        try {
+            AccountsManager.loadAccounts(directory);
+        } catch (IOException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+
+    @Test
+    public void checkpointTest() throws Exception {
+        AccountsManager.setCheckpointPolicy(3, Long.MAX_VALUE);
+        populate();
+        AccountsManager.createDT("otherName");
+        AccountsManager.close();
+
+        assertTrue(new File(directory, "accountsData.temp").length() > 0);
+        for (String name : folder.getRoot().list())
+            assertFalse(name, name.startsWith("accountsData.journal."));
+        AccountsManager.loadAccounts(directory);
+        assertPopulated();
+        assertTrue(AccountsManager.contains("otherName"));
+    }
+
+    @Test
+    public void idleCheckpointTest() throws Exception {
+        AccountsManager.setCheckpointPolicy(Integer.MAX_VALUE, 1000);
+        populate();
+        // no llegan mas operaciones, la foto se toma igual cuando vence el intervalo
+        File snapshot = new File(directory, "accountsData.temp");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (snapshot.length() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(50);
+        assertTrue(snapshot.length() > 0);
+        AccountsManager.close();
+        AccountsManager.loadAccounts(directory);
+        assertPopulated();
+    }
+
+    @Test
+    public void partialSnapshotTest() throws Exception {
+        populate();
+        AccountsManager.createAdmin("otherAdmin");
+        AccountsManager.setUser("otherAdmin");
+        AccountsManager.getCommands().createTournament((Administrator) AccountsManager.getSignedAccount(), "otherTour", 3);
+        AccountsManager.save();
+        AccountsManager.close();
+
+        // solo se lee el otro administrador, el resto se copia de la foto anterior
+        AccountsManager.loadAccounts(directory);
+        AccountsManager.setUser("otherAdmin");
+        Administrator other = (Administrator) AccountsManager.getSignedAccount();
+        AccountsManager.getCommands().addTeam(other.getTournaments().iterator().next(), new PhysicalTeam("otherTeam", 3));
+        AccountsManager.save();
+        AccountsManager.close();
+
+        AccountsManager.loadAccounts(directory);
+        assertPopulated();
+        AccountsManager.setUser("otherAdmin");
+        other = (Administrator) AccountsManager.getSignedAccount();
+        assertTrue(other.getTournament("otherTour").hasTeam(new PhysicalTeam("otherTeam", 3)));
+        assertFalse(AccountsManager.contains("missingName"));
+    }
+
+    @Test
+    public void registryTest() throws Exception {
+        populate();
+        AccountsManager.save();
+        AccountsManager.close();
+
+        AccountsManager.loadAccounts(directory);
+        List<Administrator> admins = AccountsManager.getAdmins();
+        assertEquals(1, admins.size());
+        AccountsManager.createAdmin("otherAdmin");
+        AccountsManager.createDT("adminName");
+        assertEquals(2, AccountsManager.getAdmins().size());
+        // la lista que se pidió antes no cambia
+        assertEquals(1, admins.size());
+        AccountsManager.setUser("adminName");
+        assertFalse(AccountsManager.accountIsDT());
+        AccountsManager.setUser("otherAdmin");
+        assertTrue(AccountsManager.getAdmins().contains(AccountsManager.getSignedAccount()));
+    }
+
+    @Test
+    public void concurrentLoginTest() throws Exception {
+        populate();
+        AccountsManager.save();
+        AccountsManager.close();
+
+        // las cuentas de la foto se arman la primera vez que se piden
+        AccountsManager.loadAccounts(directory);
+        GameStore store = AccountsManager.getStore();
+        User[] accounts = new User[8];
+        Thread[] threads = new Thread[accounts.length];
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    accounts[index] = store.login("userName").getAccount();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        for (User account : accounts)
+            assertSame(accounts[0], account);
+        assertTrue(store.contains("userName"));
+        assertEquals(Arrays.asList(accounts[0]), store.getDTsInTournament(new PhysicalTournament("tourName", 5)));
+    }
+
+    @Test
+    public void tournamentDirectoryTest() throws Exception {
+        populate();
+        AccountsManager.createAdmin("otherAdmin");
+        AccountsManager.setUser("otherAdmin");
+        Administrator other = (Administrator) AccountsManager.getSignedAccount();
+        AccountsManager.getCommands().createTournament(other, "otherTour", 3);
+        AccountsManager.setUser("userName");
+        DT dt = (DT) AccountsManager.getSignedAccount();
+        AccountsManager.getCommands().signUp(dt, other.getTournament("otherTour"));
+        PhysicalTournament otherTour = new PhysicalTournament("otherTour", 3);
+        assertTrue(AccountsManager.getDTsInTournament(otherTour).contains(dt));
+        assertEquals(null, AccountsManager.getDTsInTournament(new PhysicalTournament("missingTour", 3)));
+        AccountsManager.save();
+        AccountsManager.close();
+
+        AccountsManager.loadAccounts(directory);
+        AccountsManager.setUser("userName");
+        dt = (DT) AccountsManager.getSignedAccount();
+        assertTrue(AccountsManager.getDTsInTournament(otherTour).contains(dt));
+        assertPopulated();
+    }
+
+    @Test
+    public void shardTest() throws Exception {
+        populate();
+        AccountsManager.createAdmin("otherAdmin");
+        AccountsManager.save();
+        AccountsManager.close();
+        List<String> shards = getShards();
+        assertEquals(2, shards.size());
+
+        // solo cambia el archivo del administrador que se usó
+        AccountsManager.loadAccounts(directory);
+        AccountsManager.setUser("otherAdmin");
+        AccountsManager.getCommands().createTournament((Administrator) AccountsManager.getSignedAccount(), "otherTour", 3);
+        AccountsManager.save();
+        // el archivo viejo sigue mapeado por la foto cargada, se borra recien al volver a abrir
+        assertEquals(3, getShards().size());
+        AccountsManager.close();
+        AccountsManager.loadAccounts(directory);
+        List<String> rewritten = getShards();
+        assertEquals(2, rewritten.size());
+        rewritten.retainAll(shards);
+        assertEquals(1, rewritten.size());
+        assertPopulated();
+    }
+
+    private List<String> getShards() {
+        List<String> shards = new ArrayList<>();
+        for (String name : folder.getRoot().list()) {
+            if (name.matches("accountsData\\.temp\\.\\d+-\\d+"))
+                shards.add(name);
+        }
+        return shards;
+    }
+
+    @Test
+    public void legacySnapshotTest() throws Exception {
+        AccountsManager.close();
+        // una foto escrita con la serializacion de java, como las de las versiones anteriores
+        ArrayList<User> users = new ArrayList<>();
+        users.add(new Administrator("adminName"));
+        users.add(new DT("userName"));
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(directory, "accountsData.temp")))) {
+            out.writeObject(users);
+        }
+        AccountsManager.loadAccounts(directory);
+        assertTrue(AccountsManager.contains("adminName"));
+        assertTrue(AccountsManager.contains("userName"));
+
+        AccountsManager.save();
+        AccountsManager.close();
+        byte[] data = Files.readAllBytes(new File(directory, "accountsData.temp").toPath());
+        assertEquals("MGDT", new String(data, 0, 4, "US-ASCII"));
+        AccountsManager.loadAccounts(directory);
+        assertTrue(account("adminName") instanceof Administrator);
+        assertTrue(account("userName") instanceof DT);
+    }
+
+    @Test
+    public void snapshotFormatTest() throws Exception {
+        PhysicalTournament tour = populate();
+        PhysicalPlayer player = tour.getTeam("teamName").getPhysicalPlayers().get(0);
+        Map<String, PhysicalPlayer.Properties> players = new HashMap<>();
+        players.put("playerName", new PhysicalPlayer.Properties(0, 0, 0, 0, -3, 0, 0));
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        teams.put("teamName", players);
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> refresh = new HashMap<>();
+        refresh.put("tourName", teams);
+        AccountsManager.getCommands().refresh((Administrator) account("adminName"), refresh);
+        AccountsManager.save();
+        AccountsManager.close();
+
+        byte[] data = Files.readAllBytes(new File(directory, "accountsData.temp").toPath());
+        assertEquals("MGDT", new String(data, 0, 4, "US-ASCII"));
+
+        AccountsManager.loadAccounts(directory);
+        AccountsManager.setUser("adminName");
+        PhysicalTournament loaded = ((Administrator) AccountsManager.getSignedAccount()).getTournament("tourName");
+        PhysicalPlayer loadedPlayer = loaded.getTeam("teamName").getPhysicalPlayers().get(0);
+        assertEquals(player.getPrice(), loadedPlayer.getPrice());
+        assertEquals(player.getProperties(), loadedPlayer.getProperties());
+
+        AccountsManager.setUser("userName");
+        DT dt = (DT) AccountsManager.getSignedAccount();
+        assertTrue(dt.getDTTeamsManager().getUserTeamPlayers(loaded).get(0) == loadedPlayer);
+    }
+}
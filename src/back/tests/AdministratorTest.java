@@ -2,15 +2,22 @@ package back.tests;
 
 import back.model.*;
 import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Assume;
 import org.junit.Test;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class AdministratorTest {
 
+    private final CommandLoop commands = GameStore.create().getCommands();
+
     @Test
     public void createAccountTest() {
         User user1 = new Administrator("adminName1");
@@ -26,7 +33,7 @@ public class AdministratorTest {
     public void createTournamentTest() {
         PhysicalTournament tour = new PhysicalTournament("tourName",5);
         Administrator admin = new Administrator("adminName");
-        admin.addTournament(tour);
+        commands.addTournament(admin, tour);
 
         assertTrue(admin.containsTournament(new PhysicalTournament("tourName",5)));
         assertEquals(tour,admin.getTournament("tourName"));
@@ -37,8 +44,8 @@ public class AdministratorTest {
         PhysicalTournament tour = new PhysicalTournament("tourName",5);
         DT DT1 = new DT("userName1");
         Administrator admin = new Administrator("adminName");
-        admin.addTournament(tour);
-        admin.addDT("tourName", DT1);
+        commands.addTournament(admin, tour);
+        commands.signUp(DT1, admin.getTournament("tourName"));
 
         List<DT> set = admin.getOrderedDTs(new PhysicalTournament("tourName",5));
 
@@ -49,6 +56,221 @@ public class AdministratorTest {
         assertFalse(set.contains(DT2));
     }
 
+    @Test
+    public void canonicalTournamentTest() {
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+
+        assertTrue(tour == admin.getTournament("tourName"));
+        assertTrue(tour == admin.getTournaments().iterator().next());
+        assertTrue(admin.getTournament("tourName").hasTeam(new PhysicalTeam("teamName", 5)));
+        assertEquals(null, admin.getTournament("otherName"));
+
+        Administrator copy = SerializationUtils.clone(admin);
+        assertTrue(copy.getTournament("tourName").hasTeam(new PhysicalTeam("teamName", 5)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnlyTeamsTest() {
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        admin.getTournament("tourName").getTeams().add(new PhysicalTeam("teamName", 5));
+    }
+
+    @Test
+    public void leaderboardTest() throws Exception {
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+        PhysicalPlayer p1 = new PhysicalPlayer("playerName1");
+        PhysicalPlayer p2 = new PhysicalPlayer("playerName2");
+        commands.addPlayer(tour.getTeam("teamName"), p1);
+        commands.addPlayer(tour.getTeam("teamName"), p2);
+        DT c = new DT("userNameC");
+        DT a = new DT("userNameA");
+        DT b = new DT("userNameB");
+        for (DT dt : new DT[]{c, a, b}) {
+            commands.signUp(dt, tour);
+        }
+        commands.buy(a, tour, p1);
+        commands.buy(b, tour, p2);
+
+        // a igual puntaje se ordenan por nombre
+        assertEquals(a, admin.getOrderedDTs(tour).get(0));
+        assertEquals(3, admin.getRanking(tour, c));
+
+        Map<String, PhysicalPlayer.Properties> team = new HashMap<>();
+        team.put("playerName1", new PhysicalPlayer.Properties(1, 0, 0, 0, 0, 0, 0));
+        team.put("playerName2", new PhysicalPlayer.Properties(2, 0, 0, 0, 0, 0, 0));
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        teams.put("teamName", team);
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        data.put("tourName", teams);
+        commands.refresh(admin, data);
+
+        List<DT> ordered = admin.getOrderedDTs(tour);
+        assertEquals(b, ordered.get(0));
+        assertEquals(a, ordered.get(1));
+        assertEquals(c, ordered.get(2));
+        assertEquals(1, admin.getRanking(tour, b));
+        assertEquals(0, admin.getRanking(tour, new DT("otherName")));
+        List<DT> page = admin.getOrderedDTs(tour, 1, 5);
+        assertEquals(2, page.size());
+        assertEquals(a, page.get(0));
+
+        DT d = new DT("userNameD");
+        commands.signUp(d, tour);
+        assertEquals(4, admin.getRanking(tour, d));
+    }
+
+    @Test
+    public void refreshOwnersTest() throws Exception {
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName", 5));
+        PhysicalPlayer p1 = new PhysicalPlayer("playerName1");
+        PhysicalPlayer p2 = new PhysicalPlayer("playerName2");
+        commands.addPlayer(tour.getTeam("teamName"), p1);
+        commands.addPlayer(tour.getTeam("teamName"), p2);
+        DT a = new DT("userNameA");
+        DT b = new DT("userNameB");
+        for (DT dt : new DT[]{a, b}) {
+            commands.signUp(dt, tour);
+            commands.buy(dt, tour, p1);
+        }
+
+        Map<String, PhysicalPlayer.Properties> team = new HashMap<>();
+        team.put("playerName1", new PhysicalPlayer.Properties(1, 0, 0, 0, 0, 0, 0));
+        team.put("playerName2", new PhysicalPlayer.Properties(2, 0, 0, 0, 0, 0, 0));
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        teams.put("teamName", team);
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        data.put("tourName", teams);
+        commands.refresh(admin, data);
+        assertEquals(1, a.getPoints(tour));
+        assertEquals(1, b.getPoints(tour));
+
+        // la venta se registra aunque se haga con una copia del torneo
+        commands.sell(b, new PhysicalTournament("tourName", 5), p1);
+        commands.buy(b, new PhysicalTournament("tourName", 5), p2);
+        commands.refresh(admin, data);
+        assertEquals(2, a.getPoints(tour));
+        assertEquals(3, b.getPoints(tour));
+    }
+
+    @Test
+    public void parallelRefreshTest() throws Exception {
+        List<DT> sequential = new ArrayList<>();
+        List<DT> parallel = new ArrayList<>();
+        Administrator first = buildLeague(sequential);
+        Administrator second = buildLeague(parallel);
+        for (int round = 0; round < 3; round++) {
+            commands.refresh(first, leagueData(round));
+            commands.refresh(second, leagueData(round), true);
+        }
+        for (int t = 0; t < 3; t++) {
+            PhysicalTournament tour = new PhysicalTournament("tourName" + t, 5);
+            for (int i = 0; i < sequential.size(); i++)
+                assertEquals(sequential.get(i).getPoints(tour), parallel.get(i).getPoints(tour));
+            assertEquals(first.getOrderedDTs(tour), second.getOrderedDTs(tour));
+        }
+    }
+
+    private Administrator buildLeague(List<DT> dts) throws Exception {
+        Administrator admin = new Administrator("adminName");
+        for (int i = 0; i < 300; i++)
+            dts.add(new DT("userName" + i));
+        for (int t = 0; t < 3; t++) {
+            commands.createTournament(admin, "tourName" + t, 5);
+            PhysicalTournament tour = admin.getTournament("tourName" + t);
+            List<PhysicalPlayer> players = new ArrayList<>();
+            for (int k = 0; k < 2; k++) {
+                commands.addTeam(tour, new PhysicalTeam("teamName" + k, 5));
+                for (int p = 0; p < 5; p++) {
+                    PhysicalPlayer player = new PhysicalPlayer("playerName" + t + k + p);
+                    commands.addPlayer(tour.getTeam("teamName" + k), player);
+                    players.add(player);
+                }
+            }
+            for (int i = 0; i < dts.size(); i++) {
+                commands.signUp(dts.get(i), tour);
+                for (int k = 0; k < 3; k++)
+                    commands.buy(dts.get(i), tour, players.get((i * (t + 1) + k * 7) % players.size()));
+            }
+            admin.getOrderedDTs(tour);
+        }
+        return admin;
+    }
+
+    private static Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> leagueData(int round) {
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        for (int t = 0; t < 3; t++) {
+            Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+            for (int k = 0; k < 2; k++) {
+                Map<String, PhysicalPlayer.Properties> team = new HashMap<>();
+                for (int p = 0; p < 5; p++)
+                    team.put("playerName" + t + k + p, new PhysicalPlayer.Properties((p + round) % 4, 0, 0, k, (t + p) % 2, 0, round % 2));
+                teams.put("teamName" + k, team);
+            }
+            data.put("tourName" + t, teams);
+        }
+        return data;
+    }
+
+    @Test
+    public void refreshAllocationTest() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        long small = refreshAllocation(50);
+        long large = refreshAllocation(2000);
+        // lo que se reserva por actualizacion no depende de la cantidad de DTs
+        assertTrue(small + " " + large, large <= small + 1024);
+    }
+
+    /**
+     * @return los bytes reservados por actualizacion de un torneo con esa cantidad de DTs*/
+    private long refreshAllocation(int dts) throws Exception {
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        List<PhysicalPlayer> players = new ArrayList<>();
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        for (int t = 0; t < 4; t++) {
+            PhysicalTeam team = new PhysicalTeam("teamName" + t, 5);
+            commands.addTeam(tour, team);
+            Map<String, PhysicalPlayer.Properties> data = new HashMap<>();
+            for (int p = 0; p < 5; p++) {
+                PhysicalPlayer player = new PhysicalPlayer("playerName" + t + p);
+                commands.addPlayer(tour.getTeam(team.getName()), player);
+                players.add(player);
+                data.put(player.getName(), new PhysicalPlayer.Properties(p % 3, 0, 0, 0, t % 2, 0, 0));
+            }
+            teams.put(team.getName(), data);
+        }
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        data.put("tourName", teams);
+        for (int i = 0; i < dts; i++) {
+            DT dt = new DT("userName" + i);
+            commands.signUp(dt, tour);
+            for (int k = 0; k < 5; k++)
+                commands.buy(dt, tour, players.get((i + k * 3) % players.size()));
+        }
+        admin.getOrderedDTs(tour);
+        tour.getRanking(players.get(0));
+        for (int i = 0; i < 20; i++)
+            commands.refresh(admin, data);
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 10; i++)
+            commands.refresh(admin, data);
+        return (bean.getThreadAllocatedBytes(id) - before) / 10;
+    }
+
     @Test
     public void serializationTest() {
         Serializable original = new Administrator("adminName");
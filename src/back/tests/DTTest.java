@@ -1,48 +1,82 @@
 package back.tests;
 
 import back.model.*;
+import back.model.exceptions.ClosedWindowException;
+import back.model.exceptions.CompleteTeamException;
+import back.model.exceptions.ExistentNameException;
+import back.model.exceptions.InsufficientFundsException;
+import back.model.exceptions.OpenWindowException;
 import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Assume;
 import org.junit.Test;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class DTTest {
 
+    private final GameStore store = GameStore.create();
+    private final CommandLoop commands = store.getCommands();
+
     @Test
     public void createUserTest() {
         DT DT1 = new DT("userName1");
         DT DT2 = new DT("userName2");
         PhysicalTournament t = new PhysicalTournament("tourName", 5);
         Administrator admin = new Administrator("admin");
-        admin.addTournament(t);
-        admin.addDT("tourName", DT1);
+        commands.addTournament(admin, t);
+        commands.signUp(DT1, admin.getTournament("tourName"));
 
         assertFalse(DT1.equals(DT2));
         assertEquals(0, DT1.getPoints(t));
     }
 
     @Test
-    public void expensesTest() {
+    public void tournamentNumberTest() throws Exception {
+        DT DT = new DT("userName");
+        PhysicalTournament tour = new PhysicalTournament("tourName", 5);
+        PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName");
+        PhysicalTeam team = new PhysicalTeam("teamName", 5);
+        commands.addPlayer(team, physicalPlayer);
+        commands.addTeam(tour, team);
+        // se inscribe antes de que el torneo tenga numero
+        commands.signUp(DT, tour);
+        commands.addTournament(new Administrator("admin"), tour);
+
+        commands.buy(DT, tour, physicalPlayer);
+        assertEquals(20000 - physicalPlayer.getPrice(), DT.getExpenses().getAvailableFunds(tour));
+        assertEquals(20000 - physicalPlayer.getPrice(), DT.getExpenses().getAvailableFunds(new PhysicalTournament("tourName", 5)));
+        assertEquals(0, DT.getExpenses().getAvailableFunds(new PhysicalTournament("otherName", 5)));
+    }
+
+    @Test
+    public void expensesTest() throws Exception {
         DT DT = new DT("userName");
         PhysicalTournament tour = new PhysicalTournament("tourName",5);
         PhysicalTeam team = new PhysicalTeam("teamName",5);
         PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName");
 
         try {
-            team.addPlayer(physicalPlayer);
+            commands.addPlayer(team, physicalPlayer);
         }catch (Exception e) {
             e.printStackTrace();
         }
-        tour.addTeam(team);
-        DT.signUp(tour);
+        commands.addTeam(tour, team);
+        commands.signUp(DT, tour);
 
         boolean thrown = false;
         try {
-            DT.buy(tour, physicalPlayer);
+            commands.buy(DT, tour, physicalPlayer);
         } catch (Exception e) {
             thrown = true;
         }
@@ -52,7 +86,7 @@ public class DTTest {
         assertEquals(20000- physicalPlayer.getPrice(), DT.getExpenses().getAvailableFunds(tour));
         assertTrue(DT.getDTTeamsManager().getUserTeamPlayers(tour).contains(physicalPlayer));
 
-        DT.sell(tour, physicalPlayer);
+        commands.sell(DT, tour, physicalPlayer);
 
         assertEquals(20000, DT.getExpenses().getAvailableFunds(tour));
     }
@@ -65,15 +99,15 @@ public class DTTest {
         PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName");
 
         try {
-            team.addPlayer(physicalPlayer);
+            commands.addPlayer(team, physicalPlayer);
         }catch (Exception e) {
             e.printStackTrace();
         }
-        tour.addTeam(team);
+        commands.addTeam(tour, team);
 
-        DT.signUp(tour);
+        commands.signUp(DT, tour);
         try {
-            DT.buy(tour, physicalPlayer);
+            commands.buy(DT, tour, physicalPlayer);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -82,16 +116,322 @@ public class DTTest {
         assertEquals(0, DT.getPoints(tour));
 
         PhysicalPlayer.Properties props = new PhysicalPlayer.Properties(1,2,3,4,3,2,1);
-        physicalPlayer.refresh(props);
 
         Map<String, PhysicalPlayer.Properties> map = new HashMap<>();
-        map.put("playerName", physicalPlayer.getProperties());
+        map.put("playerName", props);
+
+        commands.refreshPoints(DT, tour, map);
+
+        assertEquals(4, DT.getPoints(tour));
+    }
+
+    @Test
+    public void adminRefreshPointsTest() {
+        DT DT = new DT("userName");
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        PhysicalTeam team = new PhysicalTeam("teamName",5);
+        PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName");
+
+        try {
+            commands.addPlayer(team, physicalPlayer);
+        }catch (Exception e) {
+            e.printStackTrace();
+        }
+        commands.addTeam(tour, team);
+
+        commands.signUp(DT, tour);
+        try {
+            commands.buy(DT, tour, physicalPlayer);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
 
-        DT.refreshPoints(tour,map);
+        assertEquals(0, DT.getPoints(tour));
+
+        Map<String, PhysicalPlayer.Properties> map = new HashMap<>();
+        map.put("playerName", new PhysicalPlayer.Properties(1,2,3,4,3,2,1));
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        teams.put("teamName", map);
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        data.put("tourName", teams);
+        commands.refresh(admin, data);
 
         assertEquals(4, DT.getPoints(tour));
     }
 
+    @Test
+    public void insufficientFundsTest() throws Exception {
+        DT DT = new DT("userName");
+        PhysicalTournament tour = new PhysicalTournament("tourName", 5);
+        PhysicalPlayer cheap = new PhysicalPlayer("playerName1", 15000);
+        PhysicalPlayer expensive = new PhysicalPlayer("playerName2", 6000);
+        commands.signUp(DT, tour);
+        commands.buy(DT, tour, cheap);
+
+        boolean thrown = false;
+        try {
+            commands.buy(DT, tour, expensive);
+        } catch (InsufficientFundsException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        assertEquals(5000, DT.getExpenses().getAvailableFunds(tour));
+        assertFalse(DT.getDTTeamsManager().getUserTeamPlayers(tour).contains(expensive));
+    }
+
+    @Test
+    public void transferTest() throws Exception {
+        DT DT = new DT("userName");
+        PhysicalTournament tour = new PhysicalTournament("tourName", 3);
+        PhysicalPlayer p1 = new PhysicalPlayer("playerName1", 9000);
+        PhysicalPlayer p2 = new PhysicalPlayer("playerName2", 8000);
+        PhysicalPlayer p3 = new PhysicalPlayer("playerName3", 5000);
+        PhysicalPlayer p4 = new PhysicalPlayer("playerName4", 1000);
+        commands.signUp(DT, tour);
+        commands.transfer(DT, tour, Collections.<PhysicalPlayer>emptyList(), Arrays.asList(p1, p2));
+        assertEquals(3000, DT.getExpenses().getAvailableFunds(tour));
+
+        // lo vendido paga lo comprado
+        commands.transfer(DT, tour, Arrays.asList(p1), Arrays.asList(p3, p4));
+        assertEquals(6000, DT.getExpenses().getAvailableFunds(tour));
+        assertEquals(Arrays.asList(p2, p3, p4), DT.getDTTeamsManager().getUserTeamPlayers(tour));
+
+        // si algo no se puede no se cambia nada
+        boolean thrown = false;
+        try {
+            commands.transfer(DT, tour, Arrays.asList(p4), Arrays.asList(p1));
+        } catch (InsufficientFundsException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        thrown = false;
+        try {
+            commands.transfer(DT, tour, Collections.<PhysicalPlayer>emptyList(), Arrays.asList(p1));
+        } catch (CompleteTeamException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        thrown = false;
+        try {
+            commands.transfer(DT, tour, Arrays.asList(p2, p3), Arrays.asList(p1, p1));
+        } catch (ExistentNameException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        assertEquals(6000, DT.getExpenses().getAvailableFunds(tour));
+        assertEquals(Arrays.asList(p2, p3, p4), DT.getDTTeamsManager().getUserTeamPlayers(tour));
+    }
+
+    @Test
+    public void transferWindowTest() throws Exception {
+        PhysicalTournament tour = new PhysicalTournament("tourName", 5);
+        PhysicalPlayer[] players = new PhysicalPlayer[6];
+        for (int i = 0; i < players.length; i++)
+            players[i] = new PhysicalPlayer("playerName" + i, 4000);
+        DT[] dts = new DT[4];
+        for (int i = 0; i < dts.length; i++) {
+            dts[i] = new DT("userName" + i);
+            commands.signUp(dts[i], tour);
+        }
+
+        boolean thrown = false;
+        try {
+            commands.order(dts[0], tour, Collections.<PhysicalPlayer>emptyList(), Arrays.asList(players[0]));
+        } catch (ClosedWindowException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+
+        commands.openTransferWindow(tour);
+        assertTrue(store.isTransferWindowOpen(tour));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[dts.length];
+        for (int i = 0; i < threads.length; i++) {
+            DT dt = dts[i];
+            threads[i] = new Thread(() -> {
+                try {
+                    // cualquier copia del torneo deja la orden en el mismo mercado
+                    PhysicalTournament copy = new PhysicalTournament("tourName", 5);
+                    commands.order(dt, copy, Collections.<PhysicalPlayer>emptyList(), Arrays.asList(players[0], players[1]));
+                    commands.order(dt, copy, Collections.<PhysicalPlayer>emptyList(), Arrays.asList(players[2], players[3], players[4]));
+                    commands.order(dt, copy, Collections.<PhysicalPlayer>emptyList(), Arrays.asList(players[5]));
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(null, failure.get());
+        // hasta que se cierre no cambia nada
+        assertEquals(20000, dts[0].getExpenses().getAvailableFunds(tour));
+        // con el mercado abierto no se compra ni se vende en el momento
+        int rejectedNow = 0;
+        try {
+            commands.buy(dts[0], tour, players[0]);
+        } catch (OpenWindowException e) {
+            rejectedNow++;
+        }
+        try {
+            commands.sell(dts[0], tour, players[0]);
+        } catch (OpenWindowException e) {
+            rejectedNow++;
+        }
+        try {
+            commands.transfer(dts[0], tour, Collections.<PhysicalPlayer>emptyList(), Arrays.asList(players[0]));
+        } catch (OpenWindowException e) {
+            rejectedNow++;
+        }
+        assertEquals(3, rejectedNow);
+        assertEquals(20000, dts[0].getExpenses().getAvailableFunds(tour));
+        assertTrue(dts[0].getDTTeamsManager().getUserTeamPlayers(tour).isEmpty());
+
+        List<TransferOrder> rejected = commands.closeTransferWindow(tour);
+        assertFalse(store.isTransferWindowOpen(tour));
+        assertEquals(dts.length, rejected.size());
+        for (int i = 0; i < dts.length; i++) {
+            assertEquals(dts[i], rejected.get(i).getDT());
+            assertTrue(rejected.get(i).getError() instanceof CompleteTeamException);
+            assertEquals(0, dts[i].getExpenses().getAvailableFunds(tour));
+            assertEquals(Arrays.asList(players).subList(0, 5), dts[i].getDTTeamsManager().getUserTeamPlayers(tour));
+        }
+    }
+
+    @Test
+    public void completeTeamTest() throws Exception {
+        DT DT = new DT("userName");
+        PhysicalTournament tour = new PhysicalTournament("tourName", 1);
+        commands.signUp(DT, tour);
+        commands.buy(DT, tour, new PhysicalPlayer("playerName1", 100));
+
+        boolean thrown = false;
+        try {
+            commands.buy(DT, tour, new PhysicalPlayer("playerName2", 100));
+        } catch (CompleteTeamException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        // si el equipo está completo no se descuenta nada
+        assertEquals(19900, DT.getExpenses().getAvailableFunds(tour));
+
+        // vender un jugador que no tiene no le da fondos
+        commands.sell(DT, tour, new PhysicalPlayer("playerName2", 100));
+        assertEquals(19900, DT.getExpenses().getAvailableFunds(tour));
+    }
+
+    @Test
+    public void concurrentTransfersTest() throws Exception {
+        PhysicalTournament[] tours = {new PhysicalTournament("tourName1", 5), new PhysicalTournament("tourName2", 5)};
+        DT[] dts = new DT[8];
+        for (int i = 0; i < dts.length; i++) {
+            dts[i] = new DT("userName" + i);
+            for (PhysicalTournament t : tours)
+                commands.signUp(dts[i], t);
+        }
+        PhysicalPlayer[] players = new PhysicalPlayer[12];
+        for (int i = 0; i < players.length; i++)
+            players[i] = new PhysicalPlayer("playerName" + i, 1000 + i * 500);
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            Random random = new Random(i);
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int k = 0; k < 20000; k++) {
+                        DT dt = dts[random.nextInt(dts.length)];
+                        PhysicalTournament t = tours[random.nextInt(tours.length)];
+                        PhysicalPlayer p = players[random.nextInt(players.length)];
+                        if (random.nextBoolean()) {
+                            try {
+                                commands.buy(dt, t, p);
+                            } catch (InsufficientFundsException | CompleteTeamException | ExistentNameException e) {
+                                // no se pudo comprar, no tiene que cambiar nada
+                            }
+                        } else {
+                            commands.sell(dt, t, p);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(null, failure.get());
+
+        // los fondos mas lo que valen los jugadores que tiene son siempre los fondos iniciales
+        for (DT dt : dts) {
+            for (PhysicalTournament t : tours) {
+                int total = dt.getExpenses().getAvailableFunds(t);
+                for (PhysicalPlayer p : dt.getDTTeamsManager().getUserTeamPlayers(t))
+                    total += p.getPrice();
+                assertEquals(20000, total);
+                assertTrue(dt.getDTTeamsManager().getUserTeamPlayers(t).size() <= 5);
+            }
+        }
+    }
+
+    @Test
+    public void walletAllocationTest() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        DT DT = new DT("userName");
+        PhysicalTournament[] tours = new PhysicalTournament[3];
+        PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName", 100);
+        for (int i = 0; i < tours.length; i++) {
+            tours[i] = new PhysicalTournament("tourName" + i, 5);
+            commands.signUp(DT, tours[i]);
+        }
+        for (int i = 0; i < 1000; i++) {
+            commands.buy(DT, tours[i % 3], physicalPlayer);
+            commands.sell(DT, tours[i % 3], physicalPlayer);
+        }
+        long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 10000; i++) {
+            commands.buy(DT, tours[i % 3], physicalPlayer);
+            commands.sell(DT, tours[i % 3], physicalPlayer);
+        }
+        long allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        // comprar y vender no crean objetos
+        assertTrue(Long.toString(allocated), allocated < 1024);
+        assertEquals(20000, DT.getExpenses().getAvailableFunds(tours[0]));
+    }
+
+    @Test
+    public void manyTournamentsTest() throws Exception {
+        DT DT = new DT("userName");
+        PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName", 100);
+        for (int i = 0; i < 20; i++) {
+            PhysicalTournament tour = new PhysicalTournament("tourName" + i, 5);
+            commands.signUp(DT, tour);
+            if (i % 2 == 0)
+                commands.buy(DT, tour, physicalPlayer);
+        }
+
+        // se busca con otro torneo con el mismo nombre
+        for (int i = 0; i < 20; i++) {
+            PhysicalTournament same = new PhysicalTournament("tourName" + i, 5);
+            assertTrue(DT.hasSigned(same));
+            assertEquals(i % 2 == 0 ? 19900 : 20000, DT.getExpenses().getAvailableFunds(same));
+            assertEquals(i % 2 == 0 ? 1 : 0, DT.getDTTeamsManager().getUserTeamPlayers(same).size());
+        }
+        assertFalse(DT.hasSigned(new PhysicalTournament("otherName", 5)));
+
+        DT copy = SerializationUtils.clone(DT);
+        assertEquals(19900, copy.getExpenses().getAvailableFunds(new PhysicalTournament("tourName4", 5)));
+        assertTrue(copy.hasSigned(new PhysicalTournament("tourName19", 5)));
+    }
+
     @Test
     public void serializationTest() {
         DT DT = new DT("userName");
@@ -100,15 +440,15 @@ public class DTTest {
         PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName");
 
         try {
-            team.addPlayer(physicalPlayer);
+            commands.addPlayer(team, physicalPlayer);
         }catch (Exception e) {
             e.printStackTrace();
         }
-        tour.addTeam(team);
+        commands.addTeam(tour, team);
 
-        DT.signUp(tour);
+        commands.signUp(DT, tour);
         try {
-            DT.buy(tour, physicalPlayer);
+            commands.buy(DT, tour, physicalPlayer);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
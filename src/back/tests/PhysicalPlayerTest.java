@@ -1,15 +1,24 @@
 package back.tests;
 
+import back.model.Administrator;
+import back.model.CommandLoop;
+import back.model.GameStore;
 import back.model.PhysicalPlayer;
+import back.model.PhysicalTeam;
+import back.model.PhysicalTournament;
 import org.apache.commons.lang3.SerializationUtils;
 import org.junit.Test;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class PhysicalPlayerTest {
 
+    private final CommandLoop commands = GameStore.create().getCommands();
+
     @Test
     public void createPlayerTest() {
         PhysicalPlayer physicalPlayer1 = new PhysicalPlayer("playerName1",2000);
@@ -22,6 +31,57 @@ public class PhysicalPlayerTest {
         assertTrue(physicalPlayer1.equals(physicalPlayer3));
     }
 
+    @Test
+    public void versionTest() throws Exception {
+        PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName", new PhysicalPlayer.Properties(1, 0, 0, 0, 0, 0, 0));
+        int version = physicalPlayer.getVersion();
+        assertEquals(20, physicalPlayer.getPoints());
+
+        // si no cambia nada la version es la misma
+        physicalPlayer.getProperties().setProperty(0, 1);
+        assertEquals(version, physicalPlayer.getVersion());
+        physicalPlayer.getProperties().setProperty(4, 2);
+        int changed = physicalPlayer.getVersion();
+        assertTrue(changed > version);
+        assertEquals(10, physicalPlayer.getPoints());
+
+        // al pasar a un torneo la version sigue aumentando
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        PhysicalTeam team = new PhysicalTeam("teamName", 5);
+        commands.addPlayer(team, physicalPlayer);
+        commands.addTeam(tour, team);
+        assertTrue(physicalPlayer.getVersion() > changed);
+        int before = physicalPlayer.getVersion();
+        long tourVersion = tour.getVersion();
+        Map<String, PhysicalPlayer.Properties> players = new HashMap<>();
+        players.put("playerName", new PhysicalPlayer.Properties(2, 0, 0, 0, 0, 0, 0));
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        teams.put("teamName", players);
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        data.put("tourName", teams);
+        commands.refresh(admin, data);
+        assertTrue(physicalPlayer.getVersion() > before);
+        assertTrue(tour.getVersion() > tourVersion);
+        assertEquals(40, physicalPlayer.getPoints());
+
+        int refreshed = physicalPlayer.getVersion();
+        commands.refresh(admin, data);
+        assertEquals(refreshed, physicalPlayer.getVersion());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnlyPropertiesTest() throws Exception {
+        PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName");
+        PhysicalTeam team = new PhysicalTeam("teamName", 5);
+        commands.addPlayer(team, physicalPlayer);
+        PhysicalTournament tour = new PhysicalTournament("tourName", 5);
+        commands.addTeam(tour, team);
+        // en un torneo las propiedades solo cambian con el refresh del administrador
+        physicalPlayer.getProperties().setProperty(0, 1);
+    }
+
     @Test
     public void serializationTest() {
         PhysicalPlayer.Properties props = new PhysicalPlayer.Properties(1,2,3,4,5,6,7);
@@ -1,7 +1,10 @@
 package back.tests;
 
+import back.model.CommandLoop;
+import back.model.GameStore;
 import back.model.PhysicalTeam;
 import back.model.PhysicalPlayer;
+import back.model.exceptions.ExistentNameException;
 import org.apache.commons.lang3.SerializationUtils;
 import org.junit.Test;
 import java.io.Serializable;
@@ -11,6 +14,8 @@ import static org.junit.Assert.assertTrue;
 
 public class PhysicalTeamTest {
 
+    private final CommandLoop commands = GameStore.create().getCommands();
+
     @Test
     public void createTeamTest() {
         PhysicalTeam team1 = new PhysicalTeam("teamName1",5);
@@ -35,11 +40,11 @@ public class PhysicalTeamTest {
         boolean thrown = false;
 
         try {
-            team.addPlayer(p1);
-            team.addPlayer(p2);
-            team.addPlayer(p3);
-            team.addPlayer(p4);
-            team.addPlayer(p5);
+            commands.addPlayer(team, p1);
+            commands.addPlayer(team, p2);
+            commands.addPlayer(team, p3);
+            commands.addPlayer(team, p4);
+            commands.addPlayer(team, p5);
         } catch (Exception e) {
             thrown = true;
         }
@@ -47,7 +52,7 @@ public class PhysicalTeamTest {
         assertEquals(false,thrown);
 
         try {
-            team.addPlayer(p6);
+            commands.addPlayer(team, p6);
         } catch (Exception e) {
             thrown = true;
         }
@@ -55,12 +60,45 @@ public class PhysicalTeamTest {
         assertFalse(thrown);
     }
 
+    @Test
+    public void equalsTest() throws Exception {
+        PhysicalTeam team1 = new PhysicalTeam("teamName",5);
+        PhysicalTeam team2 = new PhysicalTeam("teamName",5);
+        commands.addPlayer(team1, new PhysicalPlayer("playerName1"));
+        commands.addPlayer(team1, new PhysicalPlayer("playerName2"));
+        commands.addPlayer(team2, new PhysicalPlayer("playerName2"));
+        assertFalse(team1.equals(team2));
+
+        // no importa el orden de los jugadores
+        commands.addPlayer(team2, new PhysicalPlayer("playerName1"));
+        assertTrue(team1.equals(team2));
+        assertTrue(team1.equals(team1));
+    }
+
+    @Test
+    public void largeRosterTest() throws Exception {
+        PhysicalTeam team = new PhysicalTeam("teamName",5);
+        for (int i = 0; i < 10000; i++)
+            commands.addPlayer(team, new PhysicalPlayer("playerName" + i));
+
+        boolean thrown = false;
+        try {
+            commands.addPlayer(team, new PhysicalPlayer("playerName5000"));
+        } catch (ExistentNameException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        assertEquals(10000, team.getPhysicalPlayers().size());
+        assertEquals("playerName9999", team.getPhysicalPlayers().get(9999).getName());
+        assertTrue(team.hasPlayer(new PhysicalPlayer("playerName1234")));
+    }
+
     @Test
     public void serializationTest() {
         PhysicalTeam team = new PhysicalTeam("teamName",5);
         PhysicalPlayer physicalPlayer = new PhysicalPlayer("playerName");
         try {
-            team.addPlayer(physicalPlayer);
+            commands.addPlayer(team, physicalPlayer);
         } catch (Exception e) {
             e.getMessage();
         }
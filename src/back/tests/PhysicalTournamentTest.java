@@ -1,16 +1,27 @@
 package back.tests;
 
+import back.model.Administrator;
+import back.model.CommandLoop;
+import back.model.GameStore;
+import back.model.PhysicalPlayer;
 import back.model.PhysicalTeam;
 import back.model.PhysicalTournament;
 import org.apache.commons.lang3.SerializationUtils;
 import org.junit.Test;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
 public class PhysicalTournamentTest {
 
+    private final CommandLoop commands = GameStore.create().getCommands();
+
     @Test
     public void createTeamTest() {
         PhysicalTournament tour1 = new PhysicalTournament("tourName1",5);
@@ -25,7 +36,7 @@ public class PhysicalTournamentTest {
     public void addTeamTest() {
         PhysicalTournament tour = new PhysicalTournament("tourName",5);
         PhysicalTeam team1 = new PhysicalTeam("teamName1",tour.getMaxPlayers());
-        tour.addTeam(team1);
+        commands.addTeam(tour, team1);
 
         PhysicalTeam team2 = new PhysicalTeam("teamName2",tour.getMaxPlayers());
 
@@ -33,6 +44,166 @@ public class PhysicalTournamentTest {
         assertFalse(tour.hasTeam(team2));
     }
 
+    @Test
+    public void hasTeamWithPlayersTest() throws Exception {
+        PhysicalTournament tour = new PhysicalTournament("tourName",5);
+        commands.addTeam(tour, new PhysicalTeam("teamName1",tour.getMaxPlayers()));
+        commands.addPlayer(tour.getTeam("teamName1"), new PhysicalPlayer("playerName1"));
+        commands.addPlayer(tour.getTeam("teamName1"), new PhysicalPlayer("playerName2"));
+
+        // un equipo vacio con el mismo nombre ya existe, asi no se repiten nombres
+        assertTrue(tour.hasTeam(new PhysicalTeam("teamName1",tour.getMaxPlayers())));
+        assertFalse(tour.hasTeam(new PhysicalTeam("teamName2",tour.getMaxPlayers())));
+    }
+
+    @Test
+    public void rankingTest() throws Exception {
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        commands.addTeam(tour, new PhysicalTeam("teamName1", 5));
+        commands.addTeam(tour, new PhysicalTeam("teamName2", 5));
+        PhysicalPlayer p1 = new PhysicalPlayer("playerName1", new PhysicalPlayer.Properties(1, 0, 0, 0, 0, 0, 0));
+        PhysicalPlayer p2 = new PhysicalPlayer("playerName2", new PhysicalPlayer.Properties(2, 0, 0, 0, 0, 0, 0));
+        PhysicalPlayer p3 = new PhysicalPlayer("playerName3", new PhysicalPlayer.Properties(1, 0, 0, 0, 0, 0, 0));
+        commands.addPlayer(tour.getTeam("teamName1"), p1);
+        commands.addPlayer(tour.getTeam("teamName2"), p2);
+
+        assertEquals(2, tour.getRanking(p1));
+        assertEquals(1, tour.getRanking(p2));
+        assertEquals(0, tour.getRanking(p3));
+
+        // a igual puntaje va primero el del equipo anterior
+        commands.addPlayer(tour.getTeam("teamName2"), p3);
+        assertEquals(2, tour.getRanking(p1));
+        assertEquals(3, tour.getRanking(p3));
+
+        Map<String, PhysicalPlayer.Properties> team1 = new HashMap<>();
+        team1.put("playerName1", new PhysicalPlayer.Properties(0, 0, 0, 0, 1, 0, 0));
+        Map<String, PhysicalPlayer.Properties> team2 = new HashMap<>();
+        team2.put("playerName2", new PhysicalPlayer.Properties(2, 0, 0, 0, 0, 0, 0));
+        team2.put("playerName3", new PhysicalPlayer.Properties(3, 0, 0, 0, 0, 0, 0));
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        teams.put("teamName1", team1);
+        teams.put("teamName2", team2);
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        data.put("tourName", teams);
+        commands.refresh(admin, data);
+
+        List<PhysicalPlayer> ranked = new ArrayList<>();
+        for (PhysicalPlayer p : tour.getRankedPlayers())
+            ranked.add(p);
+        assertEquals(3, ranked.size());
+        assertEquals(p3, ranked.get(0));
+        assertEquals(p2, ranked.get(1));
+        assertEquals(p1, ranked.get(2));
+        assertEquals(3, tour.getRanking(p1));
+    }
+
+    @Test
+    public void playerStatsTest() throws Exception {
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName", 5);
+        PhysicalTournament tour = admin.getTournament("tourName");
+        PhysicalPlayer.Properties props = new PhysicalPlayer.Properties(1, 0, 0, 0, 0, 0, 0);
+        PhysicalPlayer p1 = new PhysicalPlayer("playerName1", 1500, props);
+        PhysicalPlayer p2 = new PhysicalPlayer("playerName2", props);
+        PhysicalTeam team = new PhysicalTeam("teamName", 5);
+        commands.addPlayer(team, p1);
+        commands.addTeam(tour, team);
+        commands.addPlayer(tour.getTeam("teamName"), p2);
+
+        // los dos empiezan con los mismos valores pero cada uno tiene los suyos
+        props.setProperty(0, 3);
+        assertEquals(20, p1.getPoints());
+        assertEquals(20, p2.getPoints());
+        assertEquals(1500, p1.getPrice());
+
+        Map<String, PhysicalPlayer.Properties> players = new HashMap<>();
+        players.put("playerName1", new PhysicalPlayer.Properties(0, 0, 0, 1, 0, 0, 0));
+        players.put("playerName2", new PhysicalPlayer.Properties(3, 0, 0, 0, 0, 0, 0));
+        commands.refresh(admin, data("tourName", players));
+        assertEquals(60, p1.getPoints());
+        assertEquals(60, p2.getPoints());
+        assertEquals(new PhysicalPlayer.Properties(0, 0, 0, 1, 0, 0, 0).calculatePrice(), p1.getPrice());
+
+        PhysicalPlayer copy = SerializationUtils.clone(p1);
+        assertEquals(p1.getProperties(), copy.getProperties());
+        assertEquals(p1.getPrice(), copy.getPrice());
+        assertEquals(60, copy.getPoints());
+    }
+
+    /**
+     * @return los datos de un refresh de un solo equipo, que se llama teamName*/
+    private static Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data(String tournament, Map<String, PhysicalPlayer.Properties> players) {
+        Map<String, Map<String, PhysicalPlayer.Properties>> teams = new HashMap<>();
+        teams.put("teamName", players);
+        Map<String, Map<String, Map<String, PhysicalPlayer.Properties>>> data = new HashMap<>();
+        data.put(tournament, teams);
+        return data;
+    }
+
+    @Test
+    public void frozenViewsTest() throws Exception {
+        Administrator admin = new Administrator("adminName");
+        PhysicalTournament tour = new PhysicalTournament("tourName", 5);
+        PhysicalTeam team = new PhysicalTeam("teamName1", 5);
+        commands.addPlayer(team, new PhysicalPlayer("playerName1"));
+        commands.addTeam(tour, team);
+        commands.addTournament(admin, tour);
+        PhysicalTournament own = admin.getTournament("tourName");
+
+        // mientras no cambie nada se devuelve la misma lista
+        List<PhysicalTeam> teams = own.getTeams();
+        List<PhysicalPlayer> players = own.getTeam("teamName1").getPhysicalPlayers();
+        assertTrue(teams == own.getTeams());
+        assertTrue(players == own.getTeam("teamName1").getPhysicalPlayers());
+
+        // las listas que ya se devolvieron no cambian
+        commands.addTeam(own, new PhysicalTeam("teamName2", 5));
+        commands.addPlayer(own.getTeam("teamName1"), new PhysicalPlayer("playerName2"));
+        assertEquals(1, teams.size());
+        assertEquals(1, players.size());
+        assertEquals(2, own.getTeams().size());
+        assertEquals(2, own.getTeam("teamName1").getPhysicalPlayers().size());
+        assertEquals(1, tour.getTeams().size());
+
+        boolean thrown = false;
+        try {
+            own.getTeams().add(new PhysicalTeam("teamName3", 5));
+        } catch (UnsupportedOperationException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+
+    @Test
+    public void statsRowReuseTest() throws Exception {
+        PhysicalTournament tour1 = new PhysicalTournament("tourName1", 5);
+        Administrator admin = new Administrator("adminName");
+        commands.createTournament(admin, "tourName2", 5);
+        PhysicalTournament tour2 = admin.getTournament("tourName2");
+        PhysicalPlayer moved = new PhysicalPlayer("playerName1", new PhysicalPlayer.Properties(1, 0, 0, 0, 0, 0, 0));
+        PhysicalTeam team = new PhysicalTeam("teamName", 5);
+        commands.addPlayer(team, moved);
+        commands.addTeam(tour1, team);
+        PhysicalPlayer.Properties view = moved.getProperties();
+
+        // al pasar al otro torneo la vista lo sigue y su fila del primero queda libre
+        commands.addTeam(tour2, tour1.getTeam("teamName"));
+        commands.refresh(admin, data("tourName2", Collections.singletonMap("playerName1", new PhysicalPlayer.Properties(2, 0, 0, 0, 0, 0, 0))));
+        assertEquals(2, view.getProperty(0));
+        assertEquals(40, moved.getPoints());
+
+        // el que ocupa la fila libre empieza con sus propios valores
+        PhysicalPlayer other = new PhysicalPlayer("playerName2", new PhysicalPlayer.Properties(0, 0, 0, 0, 1, 0, 0));
+        commands.addPlayer(tour1.getTeam("teamName"), other);
+        assertEquals(-5, other.getPoints());
+        assertEquals(0, other.getProperties().getProperty(0));
+        assertEquals(2, moved.getProperties().getProperty(0));
+        assertEquals(40, moved.getPoints());
+    }
+
     @Test
     public void serializationTest() {
         Serializable original = new PhysicalTournament("tourName",5);
@@ -4,6 +4,7 @@ import back.model.PhysicalPlayer;
 import org.junit.Test;
 import org.apache.commons.lang3.SerializationUtils;
 import java.io.Serializable;
+import java.util.Random;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -31,6 +32,31 @@ public class PropertiesTest {
         assertEquals(115,ranking);
     }
 
+    @Test
+    public void batchCalculationsTest() {
+        Random random = new Random(1);
+        int count = 1000;
+        PhysicalPlayer.Properties[] props = new PhysicalPlayer.Properties[count];
+        // por columnas, como las guarda la tabla de estadisticas de un torneo
+        int[][] columns = new int[PhysicalPlayer.Properties.COUNT][count];
+        for (int p = 0; p < count; p++) {
+            props[p] = new PhysicalPlayer.Properties();
+            for (int i = 0; i < PhysicalPlayer.Properties.COUNT; i++) {
+                columns[i][p] = random.nextInt(40);
+                props[p].setProperty(i, columns[i][p]);
+            }
+        }
+        int[] rankings = new int[count];
+        int[] prices = new int[count];
+        PhysicalPlayer.Properties.calculateRankings(columns, count, rankings);
+        PhysicalPlayer.Properties.calculatePrices(columns, count, prices);
+
+        for (int p = 0; p < count; p++) {
+            assertEquals(props[p].calculateRanking(), rankings[p]);
+            assertEquals(props[p].calculatePrice(), prices[p]);
+        }
+    }
+
     @Test
     public void serializationTest() {
         PhysicalPlayer.Properties props = new PhysicalPlayer.Properties(1,2,3,4,5,6,7);
@@ -44,11 +44,12 @@ public class MainApp extends Application {
 
     /**
      * Se guarda automaticamente al cerrar la aplicación.
+     * Solo se bajan a disco los cambios pendientes del journal.
      */
     @Override
     public void stop(){
         try {
-            AccountsManager.save();
+            AccountsManager.close();
             super.stop();
         } catch (Exception e) {
             MainApp.createAlert("Error al guardar en archivo, Mini Gran DT se va a cerrar.\n" + e.getMessage()).showAndWait();
@@ -152,10 +153,11 @@ public class MainApp extends Application {
         }
 
         Random rand = new Random();
+        CommandLoop commands = AccountsManager.getCommands();
 
         int j = 0;
         int p = 0;
-        ArrayList<Administrator> admins = AccountsManager.getAdmins();
+        List<Administrator> admins = AccountsManager.getAdmins();
         for (Administrator admin:admins) {
             for (String tourName:tourNames) {
                 int maxPlayers = rand.nextInt(7) + 5; // min 5 ,max 5+7
@@ -164,9 +166,9 @@ public class MainApp extends Application {
                     j = j == 49 ? 0 : j;
                     p = p == 53 ? 0 : p;
                     String pais = paises[p++];
-                    tour.addTeam(new PhysicalTeam(teamNames[j++]+" de "+pais,tour.getMaxPlayers()));
+                    commands.addTeam(tour, new PhysicalTeam(teamNames[j++]+" de "+pais,tour.getMaxPlayers()));
                 }
-                admin.addTournament(tour);
+                commands.addTournament(admin, tour);
             }
         }
 
@@ -174,7 +176,7 @@ public class MainApp extends Application {
         for (Administrator admin:admins) {
             Set<PhysicalTournament> tours = admin.getTournaments();
             for (PhysicalTournament tour:tours) {
-                ArrayList<PhysicalTeam> teams = tour.getTeams();
+                List<PhysicalTeam> teams = tour.getTeams();
                 int maxPlayers = tour.getMaxPlayers();
                 for (PhysicalTeam team:teams) {
                     for (int k = 0; k < maxPlayers; k++) {
@@ -184,9 +186,8 @@ public class MainApp extends Application {
                             for (int l = 0; l < 7; l++) {
                                 prop.setProperty(l,rand.nextInt(25));
                             }
-                            PhysicalPlayer player = new PhysicalPlayer(men.get(i++),prop);
-                            player.refreshPrice();
-                            team.addPlayer(player);
+                            PhysicalPlayer player = new PhysicalPlayer(men.get(i++),prop.calculatePrice(),prop);
+                            commands.addPlayer(team, player);
                         } catch (ExistentNameException e) {
                             System.out.println("salta");
                             // está excepcion puede saltar puesto que no tengo tantos nombre habilitados
@@ -40,7 +40,7 @@ public class AddTournamentController{
         String tournamentName = tournamentTextField.getText();
         int maxPlayers = parseInt(playersTextField.getText());
         if(!((Administrator)AccountsManager.getSignedAccount()).containsTournament(new PhysicalTournament(tournamentName,maxPlayers))) {
-            if(((Administrator) AccountsManager.getSignedAccount()).createTournament(tournamentName, maxPlayers))
+            if(AccountsManager.getCommands().createTournament((Administrator) AccountsManager.getSignedAccount(), tournamentName, maxPlayers))
                 MainApp.setScene("adminView");
             else
                 error.setVisible(true);
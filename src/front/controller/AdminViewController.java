@@ -100,11 +100,12 @@ public class AdminViewController implements Initializable{
         Optional<String> result = dialog.showAndWait();
         if (result.isPresent()) {
             PhysicalTeam toAddTeam = new PhysicalTeam(result.get(), expandedPhysicalTournament.getMaxPlayers());
-            if(expandedPhysicalTournament.hasTeam(toAddTeam)) {
+            PhysicalTournament tournament = expandedPhysicalTournament;
+            if(AccountsManager.getCommands().read(() -> tournament.hasTeam(toAddTeam))) {
                 MainApp.createAlert("El equipo " + toAddTeam.getName() + " ya existe.").showAndWait();
                 return;
             }
-            expandedPhysicalTournament.addTeam(toAddTeam);
+            AccountsManager.getCommands().addTeam(expandedPhysicalTournament, toAddTeam);
             RadioButton aux = new RadioButton();
             aux.setText(toAddTeam.getName());
             tournamentToggleGroupMap.get(expandedPhysicalTournament).getToggles().add(aux);
@@ -126,7 +127,7 @@ public class AdminViewController implements Initializable{
         Optional<String> result = dialog.showAndWait();
         if (result.isPresent()){
             try {
-                team.addPlayer(new PhysicalPlayer(result.get()));
+                AccountsManager.getCommands().addPlayer(team, new PhysicalPlayer(result.get()));
                 playersTableView.getItems().add(new ViewPlayer(result.get()));
             } catch(ExistentNameException e){
                 MainApp.createAlert("Jugador ya existente.").showAndWait();
@@ -139,15 +140,21 @@ public class AdminViewController implements Initializable{
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        Set<PhysicalTournament> physicalTournaments = AccountsManager.getTournaments();
-
-        for (PhysicalTournament physicalTournament : physicalTournaments) {
+        /*Los torneos y sus equipos se leen juntos, entre dos tandas de cambios*/
+        Map<PhysicalTournament, List<PhysicalTeam>> physicalTournaments = AccountsManager.getCommands().read(() -> {
+            Map<PhysicalTournament, List<PhysicalTeam>> read = new LinkedHashMap<>();
+            for (PhysicalTournament physicalTournament : AccountsManager.getTournaments())
+                read.put(physicalTournament, new ArrayList<>(physicalTournament.getTeams()));
+            return read;
+        });
+
+        for (PhysicalTournament physicalTournament : physicalTournaments.keySet()) {
             ToggleGroup tournamentGroup = new ToggleGroup();
             VBox tournamentBox = new VBox(10);
             tournamentBox.setPadding(new Insets(10));
             tournamentToggleGroupMap.put(physicalTournament, tournamentGroup);
             tournamentVBoxMap.put(physicalTournament, tournamentBox);
-            for (PhysicalTeam team : physicalTournament.getTeams()) {
+            for (PhysicalTeam team : physicalTournaments.get(physicalTournament)) {
                 RadioButton teamButton = new RadioButton(team.getName());
                 tournamentGroup.getToggles().add(teamButton);
                 tournamentBox.getChildren().add(teamButton);
@@ -158,7 +165,7 @@ public class AdminViewController implements Initializable{
                     addPlayer.setVisible(true);
                     RadioButton selected = (RadioButton)tournamentGroup.getSelectedToggle();
                     actualPhysicalTournament = physicalTournament;
-                    team = physicalTournament.getTeam(selected.getText());
+                    team = AccountsManager.getCommands().read(() -> physicalTournament.getTeam(selected.getText()));
                     showTeamPlayers();
                     playersAnchorPane.setVisible(true);
                 }
@@ -176,7 +183,7 @@ public class AdminViewController implements Initializable{
                             playersAnchorPane.setVisible(true);
                             RadioButton selected = (RadioButton)tournamentGroup.getSelectedToggle();
                             actualPhysicalTournament = physicalTournament;
-                            team = physicalTournament.getTeam(selected.getText());
+                            team = AccountsManager.getCommands().read(() -> physicalTournament.getTeam(selected.getText()));
                             showTeamPlayers();
                         }
                     }
@@ -234,10 +241,14 @@ public class AdminViewController implements Initializable{
         goalsAgainst.setCellFactory(TextFieldTableCell.forTableColumn(new IntegerConverter()));
         goalsAgainst.setOnEditCommit(t -> t.getTableView().getItems().get(t.getTablePosition().getRow()).setGoalsAgainst(t.getNewValue()));
 
-        ArrayList<ViewPlayer> newPlayers = new ArrayList<>();
-        for (PhysicalPlayer physicalPlayer : team.getPhysicalPlayers()){
-            newPlayers.add(new ViewPlayer(physicalPlayer.getName(), physicalPlayer.getProperties().getProperty(0), physicalPlayer.getProperties().getProperty(1), physicalPlayer.getProperties().getProperty(2), physicalPlayer.getProperties().getProperty(3), physicalPlayer.getProperties().getProperty(4), physicalPlayer.getProperties().getProperty(5), physicalPlayer.getProperties().getProperty(6)));
-        }
+        PhysicalTeam shown = team;
+        ArrayList<ViewPlayer> newPlayers = AccountsManager.getCommands().read(() -> {
+            ArrayList<ViewPlayer> read = new ArrayList<>();
+            for (PhysicalPlayer physicalPlayer : shown.getPhysicalPlayers()){
+                read.add(new ViewPlayer(physicalPlayer.getName(), physicalPlayer.getProperties().getProperty(0), physicalPlayer.getProperties().getProperty(1), physicalPlayer.getProperties().getProperty(2), physicalPlayer.getProperties().getProperty(3), physicalPlayer.getProperties().getProperty(4), physicalPlayer.getProperties().getProperty(5), physicalPlayer.getProperties().getProperty(6)));
+            }
+            return read;
+        });
         ObservableList<ViewPlayer> data = FXCollections.observableArrayList(newPlayers);
 
         playersAnchorPane.getChildren().removeAll();
@@ -257,7 +268,7 @@ public class AdminViewController implements Initializable{
     private void uploadData(){
         Map<String,Map<String,Map<String, PhysicalPlayer.Properties>>> dataTournaments = new HashMap<>();
         dataTournaments.put(actualPhysicalTournament.getName(), getTournamentData());
-        ((Administrator)AccountsManager.getSignedAccount()).refresh(dataTournaments);
+        AccountsManager.getCommands().refresh((Administrator) AccountsManager.getSignedAccount(), dataTournaments);
     }
 
     /**
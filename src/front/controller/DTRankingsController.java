@@ -29,18 +29,23 @@ public class DTRankingsController implements Initializable {
     @FXML
     private AnchorPane rankingsAnchorPane;
 
-    private static ArrayList<DT> users;
-    private static String tournamentName;
-    private static PhysicalTournament physicalTournament;
-    private static Map<DT,Integer> usersMap;
+    private ArrayList<DT> users;
+    private PhysicalTournament physicalTournament;
+    private Map<DT,Integer> usersMap;
+    private Map<DT,Integer> pointsMap;
 
     /**
-     * Coloca a todos los usuarios del torneo en la tabla.
+     * Coloca a todos los usuarios del torneo que se está mirando en la sesion en la tabla.
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        tournamentLabel.setText(tournamentName);
+        physicalTournament = AccountsManager.getSession().getTournament();
+        tournamentLabel.setText(physicalTournament.getName());
+        /*Los DTs y sus puntos se leen juntos, entre dos tandas de cambios*/
+        pointsMap = new HashMap<>();
+        users = AccountsManager.getCommands().read(this::readUsers);
         if (users != null) {
+            usersMap = setRanking();
 
             TableColumn<DT, Integer> rankingColumn = new TableColumn<>("Puesto");
             TableColumn<DT, String> userColumn = new TableColumn<>("DT");
@@ -48,7 +53,7 @@ public class DTRankingsController implements Initializable {
 
             rankingColumn.setCellValueFactory(param -> new SimpleIntegerProperty(getRanking(param.getValue())).asObject());
             userColumn.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getName()));
-            pointsColumn.setCellValueFactory(param -> new SimpleIntegerProperty(param.getValue().getPoints(physicalTournament)).asObject());
+            pointsColumn.setCellValueFactory(param -> new SimpleIntegerProperty(pointsMap.get(param.getValue())).asObject());
 
             rankingColumn.setMinWidth(100);
             rankingColumn.setMaxWidth(100);
@@ -77,15 +82,17 @@ public class DTRankingsController implements Initializable {
     }
 
     /**
-     * Setea la información de un torneo para generar el ranking.
+     * Lee los DTs del torneo, ordenados, y guarda sus puntos. Se ejecuta en el hilo que escribe.
      *
-     * @param t Torneo a usar
+     * @return Los DTs del torneo, o null si el torneo no existe
      */
-    static void setInfo(PhysicalTournament t){
-        tournamentName = t.getName();
-        physicalTournament = t;
-        users = AccountsManager.getDTsInTournament(t);
-        usersMap = setRanking();
+    private ArrayList<DT> readUsers() {
+        ArrayList<DT> dts = AccountsManager.getDTsInTournament(physicalTournament);
+        if (dts != null) {
+            for (DT dt : dts)
+                pointsMap.put(dt, dt.getPoints(physicalTournament));
+        }
+        return dts;
     }
 
     /**
@@ -93,7 +100,7 @@ public class DTRankingsController implements Initializable {
      *
      * @return Mapa con usuarios como key y su puesto como value
      */
-    private static Map<DT, Integer> setRanking() {
+    private Map<DT, Integer> setRanking() {
         Map<DT,Integer> map = new HashMap<>();
         for (int i=0; i<users.size(); i++) {
             map.put(users.get(i), i+1);
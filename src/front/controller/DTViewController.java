@@ -54,12 +54,18 @@ public class DTViewController implements Initializable{
     @Override
     public void initialize(URL location, ResourceBundle resources) {
 
-        for(Administrator administrator : AccountsManager.getAdmins()) {
+        /*Los administradores y sus torneos se leen juntos, entre dos tandas de cambios*/
+        Map<Administrator, List<PhysicalTournament>> tournaments = AccountsManager.getCommands().read(() -> {
+            Map<Administrator, List<PhysicalTournament>> read = new LinkedHashMap<>();
+            for (Administrator administrator : AccountsManager.getAdmins())
+                read.put(administrator, new ArrayList<>(administrator.getTournaments()));
+            return read;
+        });
+        for(Administrator administrator : tournaments.keySet()) {
             ToggleGroup tournamentGroup = new ToggleGroup();
             VBox tournamentBox = new VBox(10);
             tournamentBox.setPadding(new Insets(10));
-            for(PhysicalTournament physicalTournament : administrator.getTournaments()) {
-                physicalTournament.setAdministrator(administrator);
+            for(PhysicalTournament physicalTournament : tournaments.get(administrator)) {
                 RadioButton tButton = new RadioButton(physicalTournament.getName());
                 map.put(tButton, physicalTournament);
                 tournamentGroup.getToggles().add(tButton);
@@ -85,9 +91,8 @@ public class DTViewController implements Initializable{
             @Override
             public void handle(MouseEvent event) {
                 if(selectedButton != null) {
-                    ((DT)AccountsManager.getSignedAccount()).signUp(map.get(selectedButton));
-                    map.get(selectedButton).getAdministrator().addDT(map.get(selectedButton).getName(), (DT) AccountsManager.getSignedAccount());
-                    TeamManagerController.setPhysicalTournament(map.get(selectedButton));
+                    AccountsManager.getCommands().signUp((DT) AccountsManager.getSignedAccount(), map.get(selectedButton));
+                    AccountsManager.getSession().setTournament(map.get(selectedButton));
                     FXMLLoader loader = new FXMLLoader(getClass().getResource("/resources/view/teamManager.fxml"));
                     Parent root = null;
                     try {
@@ -118,7 +123,7 @@ public class DTViewController implements Initializable{
         if(tournamentGroup.getSelectedToggle() != null && ((DT)AccountsManager.getSignedAccount()).hasSigned(map.get(tournamentGroup.getSelectedToggle()))) {
             RadioButton selected = (RadioButton)tournamentGroup.getSelectedToggle();
             PhysicalTournament aux = administrator.getTournament(map.get(selected).getName());
-            TeamManagerController.setPhysicalTournament(aux);
+            AccountsManager.getSession().setTournament(aux);
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/resources/view/teamManager.fxml"));
             Parent root = null;
             try {
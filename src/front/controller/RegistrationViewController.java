@@ -44,9 +44,9 @@ public class RegistrationViewController {
             error.setVisible(true);
         } else {
             boolean wantsAdmin = admin_account_check.isSelected();
-            if (wantsAdmin && !AccountsManager.createAdmin(username))
+            if (wantsAdmin && !AccountsManager.getCommands().createAdmin(username))
                 error.setVisible(true);
-            else if (!AccountsManager.createDT(username))
+            else if (!AccountsManager.getCommands().createDT(username))
                 error.setVisible(true);
             else
                 MainApp.setScene("login");
@@ -4,6 +4,7 @@ import back.model.*;
 import back.model.exceptions.CompleteTeamException;
 import back.model.exceptions.ExistentNameException;
 import back.model.exceptions.InsufficientFundsException;
+import back.model.exceptions.OpenWindowException;
 import front.MainApp;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -16,6 +17,12 @@ import javafx.scene.control.*;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Controlador de la vista del manejo de un equipo para un jugador.
  *
@@ -35,7 +42,7 @@ public class TeamManagerController {
     private Label pointsLabel, fundsLabel;
 
     private DT DT;
-    private static PhysicalTournament physicalTournament;
+    private PhysicalTournament physicalTournament;
     private Tab tabbedTeam;
 
     /**
@@ -45,30 +52,33 @@ public class TeamManagerController {
     public void initialize() {
         /*Inicializo variables de instancia*/
         DT = (DT) AccountsManager.getSignedAccount();
+        physicalTournament = AccountsManager.getSession().getTournament();
+        /*Leo los equipos y sus jugadores todos juntos, entre dos tandas de cambios*/
+        Map<String, List<PlayerRow>> teams = AccountsManager.getCommands().read(this::readTeams);
         /*Configuro los tabs*/
-        for(PhysicalTeam team : physicalTournament.getTeams()) {
+        for(Map.Entry<String, List<PlayerRow>> team : teams.entrySet()) {
             Tab tab = new Tab();
-            tab.setText(team.getName());
+            tab.setText(team.getKey());
 
             /*Defino la data que va a ir adrento de la tabla*/
-            ObservableList<PhysicalPlayer> data = FXCollections.observableArrayList();
-            data.addAll(team.getPhysicalPlayers());
+            ObservableList<PlayerRow> data = FXCollections.observableArrayList();
+            data.addAll(team.getValue());
 
             /*Defino la tabla de jugadores que va adentro del tab particular*/
-            TableView<PhysicalPlayer> playerTableView = new TableView<>();
+            TableView<PlayerRow> playerTableView = new TableView<>();
             playerTableView.setItems(data);
 
             /*Defino las columnas de la tabla*/
-            TableColumn<PhysicalPlayer, String> playerName = new TableColumn<>("Nombre");
-            TableColumn<PhysicalPlayer, Integer> playerPoints = new TableColumn<>("Puntos");
-            TableColumn<PhysicalPlayer, Integer> playerPrice = new TableColumn<>("Precio");
-            TableColumn<PhysicalPlayer, Integer> playerRanking = new TableColumn<>("Ranking");
+            TableColumn<PlayerRow, String> playerName = new TableColumn<>("Nombre");
+            TableColumn<PlayerRow, Integer> playerPoints = new TableColumn<>("Puntos");
+            TableColumn<PlayerRow, Integer> playerPrice = new TableColumn<>("Precio");
+            TableColumn<PlayerRow, Integer> playerRanking = new TableColumn<>("Ranking");
 
             /*Asocio los datos con las celdas de la tabla*/
             playerPoints.setCellValueFactory(info -> (new SimpleIntegerProperty(info.getValue().getPoints())).asObject());
             playerPrice.setCellValueFactory(param -> (new SimpleIntegerProperty(param.getValue().getPrice())).asObject());
-            playerName.setCellValueFactory(param -> (new SimpleStringProperty(param.getValue().getName())));
-            playerRanking.setCellValueFactory(param -> (new SimpleIntegerProperty(physicalTournament.getRanking(param.getValue()))).asObject());
+            playerName.setCellValueFactory(param -> (new SimpleStringProperty(param.getValue().getPlayer().getName())));
+            playerRanking.setCellValueFactory(param -> (new SimpleIntegerProperty(param.getValue().getRanking())).asObject());
 
             /*Agrego las columnas a la tabla*/
             playerTableView.getColumns().addAll(playerRanking, playerName, playerPoints, playerPrice);
@@ -87,13 +97,17 @@ public class TeamManagerController {
             teamsTabPanes.getTabs().add(tab);
 
 
-            pointsLabel.setText("Puntos actuales: " + Integer.toString(DT.getPoints(physicalTournament)));
-            fundsLabel.setText("Fondos disponibles: " + Integer.toString(DT.getExpenses().getAvailableFunds(physicalTournament)));
+            ModelSnapshot snapshot = AccountsManager.getCommands().read(DT);
+            pointsLabel.setText("Puntos actuales: " + Integer.toString(snapshot.getPoints(DT, physicalTournament)));
+            fundsLabel.setText("Fondos disponibles: " + Integer.toString(snapshot.getFunds(DT, physicalTournament)));
         }
         /*Configuro el listView del usuario*/
         /*Lo lleno con los jugadores que tenga*/
-        if(DT != null && DT.hasSigned(physicalTournament))
-            userPlayerList.setItems(FXCollections.observableArrayList(DT.getDTTeamsManager().getUserTeamPlayers(physicalTournament)));
+        if(DT != null) {
+            ModelSnapshot snapshot = AccountsManager.getCommands().read(DT);
+            if (snapshot.hasSigned(DT, physicalTournament))
+                userPlayerList.setItems(FXCollections.observableArrayList(snapshot.getPlayers(DT, physicalTournament)));
+        }
         userPlayerList.setCellFactory(param -> new ListCell<PhysicalPlayer>() {
                 @Override
                 protected void updateItem(PhysicalPlayer p, boolean empty) { super.updateItem(p, empty);
@@ -116,6 +130,23 @@ public class TeamManagerController {
         removePlayerButton.setOnAction(removePlayerHandler);
     }
 
+    /**
+     * Lee los jugadores de cada equipo del torneo, con sus puntos, precio y ranking. Se ejecuta en el
+     * hilo que escribe
+     *
+     * @return Mapa con el nombre de cada equipo de key y sus jugadores de value
+     */
+    private Map<String, List<PlayerRow>> readTeams() {
+        Map<String, List<PlayerRow>> teams = new LinkedHashMap<>();
+        for (PhysicalTeam team : physicalTournament.getTeams()) {
+            List<PlayerRow> rows = new ArrayList<>();
+            for (PhysicalPlayer p : team.getPhysicalPlayers())
+                rows.add(new PlayerRow(p, p.getPoints(), p.getPrice(), physicalTournament.getRanking(p)));
+            teams.put(team.getName(), rows);
+        }
+        return teams;
+    }
+
     /**
      * Deslogea y abre la ventana de login
      */
@@ -134,22 +165,23 @@ public class TeamManagerController {
      * Abre la ventana de ranking de los jugadores
      */
     private EventHandler rankingHandler = event -> {
-        DTRankingsController.setInfo(physicalTournament);
         MainApp.setNewScene("dtRankings");
     };
 
     /**
-     * Añade un jugador al equipo y decrementa los fondos
+     * Añade los jugadores elegidos al equipo y decrementa los fondos
      */
     private EventHandler addPlayerHandler = new EventHandler() {
         @Override
         public void handle(Event event) {
             try {
                 if(tabbedTeam!=null){
-                    for (PhysicalPlayer p : (ObservableList<PhysicalPlayer>) ((TableView) tabbedTeam.getContent()).getSelectionModel().getSelectedItems()) {
-                        DT.buy(physicalTournament, p);
-                        userPlayerList.getItems().add(p);
-                    }
+                    // se compran todos los elegidos juntos, o ninguno
+                    List<PhysicalPlayer> selected = new ArrayList<>();
+                    for (PlayerRow row : ((TableView<PlayerRow>) tabbedTeam.getContent()).getSelectionModel().getSelectedItems())
+                        selected.add(row.getPlayer());
+                    AccountsManager.getCommands().transfer(DT, physicalTournament, Collections.<PhysicalPlayer>emptyList(), selected);
+                    userPlayerList.getItems().addAll(selected);
                 }
             } catch (CompleteTeamException e) {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -163,8 +195,10 @@ public class TeamManagerController {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
                 alert.setHeaderText("Jugador ya existente en el equipo.");
                 alert.showAndWait();
+            } catch (OpenWindowException e) {
+                openWindowAlert();
             }
-            fundsLabel.setText("Fondos disponibles: " + Integer.toString(DT.getExpenses().getAvailableFunds(physicalTournament)));
+            fundsLabel.setText("Fondos disponibles: " + Integer.toString(AccountsManager.getCommands().read(DT).getFunds(DT, physicalTournament)));
         }
 
     };
@@ -176,20 +210,57 @@ public class TeamManagerController {
         @Override
         public void handle(Event event) {
 
-            for(PhysicalPlayer p : userPlayerList.getSelectionModel().getSelectedItems()) {
-                DT.sell(physicalTournament, p);
-                userPlayerList.getItems().removeAll(p);
+            try {
+                for(PhysicalPlayer p : userPlayerList.getSelectionModel().getSelectedItems()) {
+                    AccountsManager.getCommands().sell(DT, physicalTournament, p);
+                    userPlayerList.getItems().removeAll(p);
+                }
+            } catch (OpenWindowException e) {
+                openWindowAlert();
             }
-            fundsLabel.setText("Fondos disponibles: " + Integer.toString(DT.getExpenses().getAvailableFunds(physicalTournament)));
+            fundsLabel.setText("Fondos disponibles: " + Integer.toString(AccountsManager.getCommands().read(DT).getFunds(DT, physicalTournament)));
         }
     };
 
     /**
-     * Setea un torneo
-     * @param t Torneo a setear
+     * Avisa que con el mercado de pases abierto no se compra ni se vende en el momento
      */
-    public static void setPhysicalTournament(PhysicalTournament t) {
-        physicalTournament = t;
+    private static void openWindowAlert() {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setHeaderText("El mercado de pases está abierto. Espere a que se cierre para comprar o vender.");
+        alert.showAndWait();
     }
 
+    /**
+     * Un jugador con lo que se muestra de él en la tabla, leido cuando se armó la ventana
+     */
+    private static class PlayerRow {
+        private final PhysicalPlayer player;
+        private final int points;
+        private final int price;
+        private final int ranking;
+
+        private PlayerRow(PhysicalPlayer player, int points, int price, int ranking) {
+            this.player = player;
+            this.points = points;
+            this.price = price;
+            this.ranking = ranking;
+        }
+
+        PhysicalPlayer getPlayer() {
+            return player;
+        }
+
+        int getPoints() {
+            return points;
+        }
+
+        int getPrice() {
+            return price;
+        }
+
+        int getRanking() {
+            return ranking;
+        }
+    }
 }